@@ -0,0 +1,123 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import tablut.TablutBoardState;
+import tablut.TablutMove;
+
+/**
+ * The positions the benchmarks run over. They come from games the engine plays
+ * against itself with a shallow search and the odd random move, so they look
+ * like real mid-game positions without taking long to make. The games are
+ * seeded, so every run of the benchmarks uses the same positions.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class BenchmarkCorpus
+{
+    /**
+     * The number of positions in the corpus.
+     */
+    public static final int               SIZE          = 64;
+    
+    /**
+     * The first and last turns positions are taken from.
+     */
+    private static final int              FIRST_TURN    = 8;
+    private static final int              LAST_TURN     = 40;
+    
+    /**
+     * The depth searched to pick each move of the games.
+     */
+    private static final int              SEARCH_DEPTH  = 2;
+    
+    /**
+     * The percent of moves in the games that are random instead of searched, so
+     * the games don't all go the same way.
+     */
+    private static final int              RANDOM_ODDS   = 25;
+    
+    /**
+     * The percent of positions in the games that are kept, so the corpus isn't
+     * made of a few games' worth of nearly identical positions.
+     */
+    private static final int              KEEP_ODDS     = 30;
+    
+    /**
+     * Seeds the games.
+     */
+    private static final long             SEED          = 260617022;
+    
+    private static List<TablutBoardState> s_positions;
+    
+    /**
+     * Gets the positions, playing the games the first time.
+     */
+    public static synchronized List<TablutBoardState> getPositions()
+    {
+        if (s_positions == null)
+        {
+            s_positions = Collections.unmodifiableList(playGames());
+        }
+        return s_positions;
+    }
+    
+    /**
+     * Gets state explorers for each position.
+     */
+    public static StateExplorer[] getExplorers()
+    {
+        List<TablutBoardState> positions = getPositions();
+        StateExplorer[] explorers = new StateExplorer[positions.size()];
+        for (int i = 0; i < explorers.length; i++)
+        {
+            explorers[i] = new StateExplorer(new Evaluator(StudentPlayer.m_evaluator), positions.get(i));
+        }
+        return explorers;
+    }
+    
+    /**
+     * Plays games until enough positions are collected.
+     */
+    private static List<TablutBoardState> playGames()
+    {
+        Random random = new Random(SEED);
+        Searcher searcher = new Searcher(new Evaluator(StudentPlayer.m_evaluator), new TranspositionTable(16), 0,
+                null, null);
+        searcher.setDepthLimit(SEARCH_DEPTH);
+        
+        List<TablutBoardState> positions = new ArrayList<TablutBoardState>();
+        while (positions.size() < SIZE)
+        {
+            TablutBoardState boardState = new TablutBoardState();
+            while (!boardState.gameOver() && boardState.getTurnNumber() <= LAST_TURN && positions.size() < SIZE)
+            {
+                TablutMove move;
+                if (random.nextInt(100) < RANDOM_ODDS)
+                {
+                    List<TablutMove> legalMoves = boardState.getAllLegalMoves();
+                    move = legalMoves.get(random.nextInt(legalMoves.size()));
+                }
+                else
+                {
+                    searcher.setRoot(boardState, Long.MAX_VALUE, 0);
+                    int packedMove = searcher.search();
+                    int from = packedMove & 0x7F;
+                    int to = (packedMove >> 7) & 0x7F;
+                    move = new TablutMove(from % 9, from / 9, to % 9, to / 9, boardState.getTurnPlayer());
+                }
+                boardState.processMove(move);
+                
+                if (!boardState.gameOver() && boardState.getTurnNumber() >= FIRST_TURN
+                        && random.nextInt(100) < KEEP_ODDS)
+                {
+                    positions.add((TablutBoardState)boardState.clone());
+                }
+            }
+        }
+        return positions;
+    }
+}
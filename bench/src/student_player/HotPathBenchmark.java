@@ -0,0 +1,168 @@
+package student_player;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tablut.TablutBoardState;
+
+/**
+ * Benchmarks the operations the search does at every node. Each benchmark runs
+ * over every position of the corpus, and the times are per position.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark
+{
+    private final int[]        m_moves = new int[StateExplorer.MAX_LEGAL_MOVES];
+    private final BitBoard     m_board = new BitBoard();
+    
+    private StateExplorer[]    m_explorers;
+    private int[][]            m_legalMoves;
+    private State[]            m_states;
+    private int[]              m_turnPlayers;
+    private long[]             m_hashes;
+    private Evaluator          m_evaluator;
+    private TranspositionTable m_transpositionTable;
+    
+    /**
+     * Prepares the positions and the moves from each.
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        List<TablutBoardState> positions = BenchmarkCorpus.getPositions();
+        m_explorers = BenchmarkCorpus.getExplorers();
+        m_legalMoves = new int[m_explorers.length][];
+        m_states = new State[m_explorers.length];
+        m_turnPlayers = new int[m_explorers.length];
+        m_hashes = new long[m_explorers.length];
+        
+        for (int i = 0; i < m_explorers.length; i++)
+        {
+            StateExplorer explorer = m_explorers[i];
+            int moveCount = explorer.getAllLegalMoves(m_moves);
+            m_legalMoves[i] = Arrays.copyOf(m_moves, moveCount);
+            m_states[i] = explorer.getState();
+            m_turnPlayers[i] = positions.get(i).getTurnPlayer();
+            m_hashes[i] = explorer.getHash();
+        }
+        
+        m_evaluator = new Evaluator(StudentPlayer.m_evaluator);
+        m_transpositionTable = new TranspositionTable(16);
+    }
+    
+    /**
+     * Frees the transposition table's memory for the next benchmark.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        m_transpositionTable = null;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void getAllLegalMoves(Blackhole blackhole)
+    {
+        for (StateExplorer explorer : m_explorers)
+        {
+            blackhole.consume(explorer.getAllLegalMoves(m_moves));
+        }
+    }
+    
+    /**
+     * Makes and unmakes every legal move of each position.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void makeUnmakeMove(Blackhole blackhole)
+    {
+        for (int i = 0; i < m_explorers.length; i++)
+        {
+            StateExplorer explorer = m_explorers[i];
+            for (int move : m_legalMoves[i])
+            {
+                explorer.makeMove(move);
+                blackhole.consume(explorer.getHash());
+                explorer.unmakeMove();
+            }
+        }
+    }
+    
+    /**
+     * Classifies every legal move of each position.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void classifyMove(Blackhole blackhole)
+    {
+        for (int i = 0; i < m_explorers.length; i++)
+        {
+            StateExplorer explorer = m_explorers[i];
+            for (int move : m_legalMoves[i])
+            {
+                blackhole.consume(explorer.classifyMove(move));
+            }
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void evaluate(Blackhole blackhole)
+    {
+        for (int i = 0; i < m_states.length; i++)
+        {
+            blackhole.consume(m_evaluator.evaluate(m_states[i], m_turnPlayers[i]));
+        }
+    }
+    
+    /**
+     * Stores an entry for each position and reads it back.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void transpositionTablePutGet(Blackhole blackhole)
+    {
+        for (int i = 0; i < m_hashes.length; i++)
+        {
+            m_transpositionTable.put(m_hashes[i], TranspositionTable.PV_NODE, 5, i, m_legalMoves[i][0], 20);
+            blackhole.consume(m_transpositionTable.get(m_hashes[i], 5, 20));
+        }
+    }
+    
+    /**
+     * Mirrors the black pieces of each position.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void mirrorDiagonal(Blackhole blackhole)
+    {
+        for (State state : m_states)
+        {
+            m_board.copy(state.black);
+            m_board.mirrorDiagonal();
+            blackhole.consume(m_board);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package student_player;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tablut.TablutBoardState;
+
+/**
+ * Benchmarks a fixed depth principal variation search of each corpus position
+ * with a single searcher, starting from an empty transposition table. The time
+ * is per position.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark
+{
+    /**
+     * The depth of the search.
+     */
+    @Param({ "5" })
+    public int                     depth;
+    
+    private List<TablutBoardState> m_positions;
+    private TranspositionTable     m_transpositionTable;
+    private Searcher               m_searcher;
+    
+    /**
+     * Creates the searcher.
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        m_positions = BenchmarkCorpus.getPositions();
+        m_transpositionTable = new TranspositionTable(16);
+        m_searcher = new Searcher(new Evaluator(StudentPlayer.m_evaluator), m_transpositionTable, 0, null, null);
+        m_searcher.setDepthLimit(depth);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void search(Blackhole blackhole)
+    {
+        for (TablutBoardState position : m_positions)
+        {
+            m_transpositionTable.clear();
+            m_searcher.setRoot(position, Long.MAX_VALUE, 0);
+            blackhole.consume(m_searcher.search());
+        }
+    }
+}
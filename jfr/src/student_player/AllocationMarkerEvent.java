@@ -0,0 +1,29 @@
+package student_player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event spanning the places where the player allocates a lot
+ * of objects during a game, so garbage collections in a recording can be
+ * matched to what caused them.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+@Name("student_player.AllocationMarker")
+@Label("Allocation Marker")
+@Category("Tablut")
+@Description("The player allocated objects outside the search")
+@StackTrace(false)
+public class AllocationMarkerEvent extends jdk.jfr.Event
+{
+    @Label("Site")
+    String site;
+    
+    @Label("Objects")
+    @Description("About how many objects were allocated")
+    long   objects;
+}
@@ -0,0 +1,162 @@
+package student_player;
+
+/**
+ * Emits the player's flight recorder events, so recordings of games show what
+ * the engine was doing next to the garbage collector and JIT activity. Events
+ * cost almost nothing unless a recording is running, in which case the data
+ * for each event is only gathered if the recording wants it.
+ * 
+ * This is the only class that touches the event classes. StudentPlayer loads it
+ * by name through EngineEvents, so the player still builds and runs on Java 8
+ * without this source folder.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class FlightRecorderEvents implements EngineEvents
+{
+    private final TelemetrySink   m_next;
+    private TurnDecisionEvent     m_turnEvent;
+    private AllocationMarkerEvent m_allocationEvent;
+    private int                   m_lastDepth;
+    private long                  m_lastElapsed;
+    
+    /**
+     * Creates an event emitter.
+     * 
+     * @param next
+     *            The sink to pass iteration reports on to, or null.
+     */
+    public FlightRecorderEvents(TelemetrySink next)
+    {
+        m_next = next;
+    }
+    
+    @Override
+    public synchronized void iterationDone(int turn, int depth, int score, int[] pv, int pvLength, long elapsed,
+            SearchStats stats)
+    {
+        // a new search starts from a lower depth
+        long iterationTime = depth > m_lastDepth ? elapsed - m_lastElapsed : elapsed;
+        m_lastDepth = depth;
+        m_lastElapsed = elapsed;
+        
+        SearchIterationEvent event = new SearchIterationEvent();
+        if (event.shouldCommit())
+        {
+            event.ply = turn;
+            event.depth = depth;
+            event.score = score;
+            event.nodes = stats.nodes;
+            event.iterationNodes = stats.iterationNodes;
+            event.elapsed = elapsed;
+            event.iterationTime = iterationTime;
+            event.pv = LogTelemetrySink.formatPV(pv, pvLength);
+            event.commit();
+        }
+        
+        if (m_next != null)
+        {
+            m_next.iterationDone(turn, depth, score, pv, pvLength, elapsed, stats);
+        }
+    }
+    
+    @Override
+    public void turnStarted()
+    {
+        m_turnEvent = new TurnDecisionEvent();
+        m_turnEvent.begin();
+    }
+    
+    @Override
+    public void searchFinished(int turn, Searcher[] searchers, TranspositionTable transpositionTable,
+            boolean ponderHit, boolean solved)
+    {
+        long nodes = 0;
+        long probes = 0;
+        long hits = 0;
+        for (Searcher searcher : searchers)
+        {
+            nodes += searcher.getNodeCount();
+            probes += searcher.getStats().tableProbes;
+            hits += searcher.getStats().tableHits;
+        }
+        
+        TurnDecisionEvent turnEvent = m_turnEvent;
+        if (turnEvent != null)
+        {
+            turnEvent.source = solved ? "solver" : "search";
+            turnEvent.depth = searchers[0].getCompletedDepth();
+            turnEvent.nodes = nodes;
+            turnEvent.ponderHit = ponderHit;
+        }
+        
+        TranspositionTableStatsEvent event = new TranspositionTableStatsEvent();
+        if (event.shouldCommit())
+        {
+            event.turn = turn;
+            event.size = transpositionTable.getSize() * 1024L * 1024L;
+            event.capacity = transpositionTable.getCapacity();
+            event.fill = transpositionTable.getFill(true) / 1000.0;
+            event.occupancy = transpositionTable.getFill(false) / 1000.0;
+            event.probes = probes;
+            event.hits = hits;
+            event.commit();
+        }
+    }
+    
+    @Override
+    public void turnFinished(int turn, int move, TranspositionTable transpositionTable)
+    {
+        TurnDecisionEvent event = m_turnEvent;
+        m_turnEvent = null;
+        if (event == null)
+        {
+            return;
+        }
+        
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.turn = turn;
+            event.move = LogTelemetrySink.formatPV(new int[] { move }, move != 0 ? 1 : 0);
+            
+            // moves that weren't searched for came from the book, unless there was no move
+            if (move == 0)
+            {
+                event.source = "random";
+            }
+            else if (event.source == null)
+            {
+                event.source = "book";
+            }
+            event.tableFill = transpositionTable.getFill(true) / 1000.0;
+            event.commit();
+        }
+    }
+    
+    @Override
+    public void allocationStarted(String site)
+    {
+        m_allocationEvent = new AllocationMarkerEvent();
+        m_allocationEvent.site = site;
+        m_allocationEvent.begin();
+    }
+    
+    @Override
+    public void allocationFinished(long objects)
+    {
+        AllocationMarkerEvent event = m_allocationEvent;
+        m_allocationEvent = null;
+        if (event == null)
+        {
+            return;
+        }
+        
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.objects = objects;
+            event.commit();
+        }
+    }
+}
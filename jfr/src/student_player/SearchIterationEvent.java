@@ -0,0 +1,52 @@
+package student_player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for each completed iteration of the main searcher.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+@Name("student_player.SearchIteration")
+@Label("Search Iteration")
+@Category("Tablut")
+@Description("An iteration of the iterative deepening search was completed")
+@StackTrace(false)
+public class SearchIterationEvent extends jdk.jfr.Event
+{
+    @Label("Ply")
+    @Description("The number of moves made by both players before the root")
+    int    ply;
+    
+    @Label("Depth")
+    int    depth;
+    
+    @Label("Score")
+    @Description("The score of the root from the view of the player to move")
+    int    score;
+    
+    @Label("Nodes")
+    @Description("The nodes visited by the search so far")
+    long   nodes;
+    
+    @Label("Iteration Nodes")
+    @Description("The nodes visited by this iteration")
+    long   iterationNodes;
+    
+    @Label("Elapsed")
+    @Description("The time from the start of the search to the end of this iteration")
+    @Timespan(Timespan.NANOSECONDS)
+    long   elapsed;
+    
+    @Label("Iteration Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long   iterationTime;
+    
+    @Label("Principal Variation")
+    String pv;
+}
@@ -0,0 +1,51 @@
+package student_player;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event describing the transposition table after each search.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+@Name("student_player.TranspositionTableStats")
+@Label("Transposition Table Statistics")
+@Category("Tablut")
+@Description("The state of the transposition table after a search")
+@StackTrace(false)
+public class TranspositionTableStatsEvent extends jdk.jfr.Event
+{
+    @Label("Turn")
+    int    turn;
+    
+    @Label("Size")
+    @DataAmount
+    long   size;
+    
+    @Label("Capacity")
+    @Description("The number of entries the table can hold")
+    long   capacity;
+    
+    @Label("Fill")
+    @Description("The part of the table holding entries from this search")
+    @Percentage
+    double fill;
+    
+    @Label("Occupancy")
+    @Description("The part of the table holding any entry")
+    @Percentage
+    double occupancy;
+    
+    @Label("Probes")
+    @Description("The probes made by the search, if the search counters are enabled")
+    long   probes;
+    
+    @Label("Hits")
+    @Description("The probes that found an entry, if the search counters are enabled")
+    long   hits;
+}
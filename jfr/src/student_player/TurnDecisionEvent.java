@@ -0,0 +1,48 @@
+package student_player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event spanning each call to choose a move, so the time
+ * used shows as the event's duration.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+@Name("student_player.TurnDecision")
+@Label("Turn Decision")
+@Category("Tablut")
+@Description("The player chose a move")
+@StackTrace(false)
+public class TurnDecisionEvent extends jdk.jfr.Event
+{
+    @Label("Turn")
+    int     turn;
+    
+    @Label("Move")
+    String  move;
+    
+    @Label("Source")
+    @Description("What decided the move: book, solver, search, or random")
+    String  source;
+    
+    @Label("Depth")
+    @Description("The depth completed by the main searcher")
+    int     depth;
+    
+    @Label("Nodes")
+    @Description("The nodes visited by all searchers")
+    long    nodes;
+    
+    @Label("Ponder Hit")
+    boolean ponderHit;
+    
+    @Label("TT Fill")
+    @Description("The part of the transposition table holding entries from this search")
+    @Percentage
+    double  tableFill;
+}
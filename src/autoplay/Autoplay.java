@@ -1,6 +1,8 @@
 package autoplay;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 //Author: Lilly Tong, Eric Crawford
 //
@@ -19,6 +21,10 @@ import java.io.IOException;
 // to test. For example to have StudentPlayer play against itself, you would
 // change ``client2_line`` to be equal to ``client1_line``.
 //
+// To record every client with Java Flight Recorder, give a directory for the
+// recordings with -Dautoplay.jfr=recordings. Each game and player gets its own
+// file, which includes the player's search events alongside GC and JIT events.
+//
 public class Autoplay
 {
     public static void main(String args[])
@@ -46,16 +52,28 @@ public class Autoplay
             
             Process server = server_pb.start();
             
-            ProcessBuilder client1_pb = new ProcessBuilder("java", "-cp", "bin", "-Xms520m", "-Xmx520m", "boardgame.Client", "student_player.StudentPlayer");
+            ProcessBuilder client1_pb = new ProcessBuilder("java", "-cp", "bin", "-Xmx128m", "-XX:MaxDirectMemorySize=600m", "-Dstudent_player.hash=512", "boardgame.Client", "student_player.StudentPlayer");
             client1_pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
             
-            ProcessBuilder client2_pb = new ProcessBuilder("java", "-cp", "bin", "-Xms520m", "-Xmx520m", "boardgame.Client", "student_player.StudentPlayerAlt");
+            ProcessBuilder client2_pb = new ProcessBuilder("java", "-cp", "bin", "-Xmx128m", "-XX:MaxDirectMemorySize=600m", "-Dstudent_player.hash=512", "boardgame.Client", "student_player.StudentPlayerAlt");
             client2_pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
             
+            String recordingDir = System.getProperty("autoplay.jfr");
+            if (recordingDir != null)
+            {
+                new File(recordingDir).mkdirs();
+            }
+            
             for (int i = 0; i < n_games; i++)
             {
                 System.out.println("Game " + i);
                 
+                if (recordingDir != null)
+                {
+                    setRecording(client1_pb, new File(recordingDir, "game" + i + "-client1.jfr").getPath());
+                    setRecording(client2_pb, new File(recordingDir, "game" + i + "-client2.jfr").getPath());
+                }
+                
                 try
                 {
                     Thread.sleep(500);
@@ -105,4 +123,15 @@ public class Autoplay
             e.printStackTrace();
         }
     }
+    
+    /**
+     * Makes a client process record itself to a flight recording file,
+     * replacing any recording set for the previous game.
+     */
+    private static void setRecording(ProcessBuilder pb, String path)
+    {
+        List<String> command = pb.command();
+        command.removeIf(arg -> arg.startsWith("-XX:StartFlightRecording"));
+        command.add(1, "-XX:StartFlightRecording=filename=" + path);
+    }
 }
@@ -344,7 +344,8 @@ public class BitBoard
     }
     
     /**
-     * Sets the bit for a given row on the board.
+     * Sets the bits for a given row on the board, leaving the other rows as they
+     * are.
      * 
      * @param row
      *            The row to set the value of.
@@ -356,35 +357,49 @@ public class BitBoard
         switch (row)
         {
             case 0:
-                d0 = VALID_BITS_MASK & value;
+                d0 = (d0 & ~ROW_MASK_1) | (ROW_MASK_1 & value);
                 break;
             case 1:
-                d0 = VALID_BITS_MASK & (value << ROW_2_SHIFT);
+                d0 = (d0 & ~ROW_MASK_2) | (ROW_MASK_2 & (value << ROW_2_SHIFT));
                 break;
             case 2:
-                d0 = VALID_BITS_MASK & (value << ROW_3_SHIFT);
+                d0 = (d0 & ~ROW_MASK_3) | (ROW_MASK_3 & (value << ROW_3_SHIFT));
                 break;
             case 3:
-                d1 = VALID_BITS_MASK & value;
+                d1 = (d1 & ~ROW_MASK_1) | (ROW_MASK_1 & value);
                 break;
             case 4:
-                d1 = VALID_BITS_MASK & (value << ROW_2_SHIFT);
+                d1 = (d1 & ~ROW_MASK_2) | (ROW_MASK_2 & (value << ROW_2_SHIFT));
                 break;
             case 5:
-                d1 = VALID_BITS_MASK & (value << ROW_3_SHIFT);
+                d1 = (d1 & ~ROW_MASK_3) | (ROW_MASK_3 & (value << ROW_3_SHIFT));
                 break;
             case 6:
-                d2 = VALID_BITS_MASK & value;
+                d2 = (d2 & ~ROW_MASK_1) | (ROW_MASK_1 & value);
                 break;
             case 7:
-                d2 = VALID_BITS_MASK & (value << ROW_2_SHIFT);
+                d2 = (d2 & ~ROW_MASK_2) | (ROW_MASK_2 & (value << ROW_2_SHIFT));
                 break;
             case 8:
-                d2 = VALID_BITS_MASK & (value << ROW_3_SHIFT);
+                d2 = (d2 & ~ROW_MASK_3) | (ROW_MASK_3 & (value << ROW_3_SHIFT));
                 break;
         }
     }
     
+    /**
+     * Gets the bits for a given column on the board.
+     * 
+     * @param col
+     *            The column on the board to get the values of.
+     * @return An integer whose bits match the rows set in the given column.
+     */
+    public int getCol(int col)
+    {
+        return (((d0 >> col) & 1) | ((d0 >> (col + 8)) & 2) | ((d0 >> (col + 16)) & 4))
+                | ((((d1 >> col) & 1) | ((d1 >> (col + 8)) & 2) | ((d1 >> (col + 16)) & 4)) << 3)
+                | ((((d2 >> col) & 1) | ((d2 >> (col + 8)) & 2) | ((d2 >> (col + 16)) & 4)) << 6);
+    }
+    
     /**
      * Mirrors the board vertically.
      */
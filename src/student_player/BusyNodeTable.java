@@ -0,0 +1,78 @@
+package student_player;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Marks the nodes that some searcher is currently searching, for the ABDADA
+ * style work sharing between searchers. When a searcher reaches a move whose
+ * resulting node is marked, it puts the move off until its other moves are done,
+ * and by then the other searcher has usually stored the result in the
+ * transposition table. This way searchers on the same root spread out over
+ * different subtrees instead of searching the same ones together.
+ * 
+ * Each slot holds the hash of one marked node, found by masking the hash. A
+ * node whose slot is taken by another node just can't be marked, which only
+ * means some work may be duplicated, so the table can be small and never needs
+ * locking beyond a compare-and-set on the slot.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class BusyNodeTable
+{
+    /**
+     * A good number of slots for a search. Only nodes near the root are marked,
+     * so few are busy at a time.
+     */
+    public static final int       DEFAULT_SLOTS = 1 << 16;
+    
+    private final AtomicLongArray m_slots;
+    private final int             m_indexMask;
+    
+    /**
+     * Constructs a busy node table.
+     * 
+     * @param slotCount
+     *            The number of slots, rounded down to a power of two.
+     */
+    public BusyNodeTable(int slotCount)
+    {
+        int count = Integer.highestOneBit(Math.max(slotCount, 1));
+        m_slots = new AtomicLongArray(count);
+        m_indexMask = count - 1;
+    }
+    
+    /**
+     * Checks if a node is being searched.
+     * 
+     * @param hash
+     *            The hash of the node.
+     */
+    public boolean isBusy(long hash)
+    {
+        return m_slots.get((int)hash & m_indexMask) == hash;
+    }
+    
+    /**
+     * Marks a node as being searched.
+     * 
+     * @param hash
+     *            The hash of the node.
+     * @return True if the node was marked, in which case it must be unmarked
+     *         once it is searched.
+     */
+    public boolean mark(long hash)
+    {
+        return m_slots.compareAndSet((int)hash & m_indexMask, 0, hash);
+    }
+    
+    /**
+     * Removes the mark from a node once it is searched.
+     * 
+     * @param hash
+     *            The hash of the node.
+     */
+    public void unmark(long hash)
+    {
+        m_slots.compareAndSet((int)hash & m_indexMask, hash, 0);
+    }
+}
@@ -0,0 +1,48 @@
+package student_player;
+
+/**
+ * Implements the counter move heuristic by remembering, for each move, the
+ * reply that last caused a beta cut-off after it. A good reply to a move is
+ * often good regardless of the rest of the board.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class CounterMoveTable
+{
+    /**
+     * The number of distinct packed moves, with the source square in bits 0-6
+     * and the destination square in bits 7-13.
+     */
+    private static final int MOVE_COUNT = 1 << 14;
+    
+    private final int[][]    m_counters = new int[2][MOVE_COUNT];
+    
+    /**
+     * Sets the counter move to a move.
+     * 
+     * @param player
+     *            The player that made the previous move.
+     * @param previousMove
+     *            The move being replied to.
+     * @param move
+     *            The reply that caused a cut-off.
+     */
+    public void set(int player, int previousMove, int move)
+    {
+        m_counters[player][previousMove & 0x3FFF] = move & 0x3FFF;
+    }
+    
+    /**
+     * Gets the counter move to a move.
+     * 
+     * @param player
+     *            The player that made the previous move.
+     * @param previousMove
+     *            The move being replied to.
+     * @return The reply, or 0 if there is none.
+     */
+    public int get(int player, int previousMove)
+    {
+        return m_counters[player][previousMove & 0x3FFF];
+    }
+}
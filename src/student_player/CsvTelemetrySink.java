@@ -0,0 +1,66 @@
+package student_player;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Appends a row for each iteration to a CSV file, for analysis after a game or
+ * a match. A header is written when a new file is created, and each row is
+ * flushed as it is written so nothing is lost if the process is killed. The
+ * principal variation is quoted, since its moves contain commas.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class CsvTelemetrySink implements TelemetrySink
+{
+    /**
+     * The column names.
+     */
+    private static final String HEADER = "turn,depth,score,elapsed_ns,nodes,quiescence_nodes,tt_probes,tt_hits,"
+            + "tt_cutoffs,cutoffs,first_move_cutoffs,killer_cutoffs,researches,aspiration_researches,"
+            + "iteration_nodes,ebf,pv";
+    
+    private final PrintWriter   m_out;
+    
+    /**
+     * Opens a file to append the rows to.
+     * 
+     * @param path
+     *            The path of the file.
+     * @throws IOException
+     *             If the file could not be opened.
+     */
+    public CsvTelemetrySink(String path) throws IOException
+    {
+        boolean isNew = new File(path).length() == 0;
+        m_out = new PrintWriter(new FileWriter(path, true));
+        if (isNew)
+        {
+            m_out.println(HEADER);
+            m_out.flush();
+        }
+    }
+    
+    @Override
+    public synchronized void iterationDone(int turn, int depth, int score, int[] pv, int pvLength, long elapsed,
+            SearchStats stats)
+    {
+        m_out.println(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%.3f,\"%s\"",
+                turn, depth, score, elapsed, stats.nodes, stats.quiescenceNodes, stats.tableProbes, stats.tableHits,
+                stats.tableCutoffs, stats.cutoffs, stats.firstMoveCutoffs, stats.killerCutoffs, stats.researches,
+                stats.aspirationResearches, stats.iterationNodes, stats.getBranchingFactor(),
+                LogTelemetrySink.formatPV(pv, pvLength)));
+        m_out.flush();
+    }
+    
+    /**
+     * Closes the file.
+     */
+    public synchronized void close()
+    {
+        m_out.close();
+    }
+}
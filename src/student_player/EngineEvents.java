@@ -0,0 +1,66 @@
+package student_player;
+
+/**
+ * Receives what the player does while choosing a move, to be recorded next to
+ * what the JVM is doing. It is also the telemetry sink of the main searcher, and
+ * passes every report on to the sink it wraps.
+ * 
+ * The only implementation emits Java Flight Recorder events. It lives in the
+ * jfr source folder, which is only compiled on JDK 11 or later, so the player
+ * loads it by name and goes without events if it isn't there.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public interface EngineEvents extends TelemetrySink
+{
+    /**
+     * Marks the start of choosing a move.
+     */
+    void turnStarted();
+    
+    /**
+     * Records the results of the search for a move, and the state of the
+     * transposition table after it.
+     * 
+     * @param turn
+     *            The turn number.
+     * @param searchers
+     *            The searchers.
+     * @param transpositionTable
+     *            The transposition table used by the searchers.
+     * @param ponderHit
+     *            If the search was already running from pondering.
+     * @param solved
+     *            If the move was proven to win by the solver.
+     */
+    void searchFinished(int turn, Searcher[] searchers, TranspositionTable transpositionTable, boolean ponderHit,
+            boolean solved);
+    
+    /**
+     * Marks the end of choosing a move.
+     * 
+     * @param turn
+     *            The turn number.
+     * @param move
+     *            The packed move chosen, or 0 if a random move is played.
+     * @param transpositionTable
+     *            The transposition table.
+     */
+    void turnFinished(int turn, int move, TranspositionTable transpositionTable);
+    
+    /**
+     * Marks the start of a place that allocates many objects.
+     * 
+     * @param site
+     *            Names the place.
+     */
+    void allocationStarted(String site);
+    
+    /**
+     * Marks the end of the place that allocates many objects.
+     * 
+     * @param objects
+     *            About how many objects were allocated.
+     */
+    void allocationFinished(long objects);
+}
@@ -0,0 +1,126 @@
+package student_player;
+
+/**
+ * Remembers the scores of recently evaluated states. The same leaf states are
+ * evaluated again and again across the iterations of a search and along
+ * different move orders, so it is cheaper to look the score up than to compute
+ * it again.
+ * 
+ * The cache is lossy, a new entry always replaces whatever was in its slot.
+ * Each entry is a single long holding the upper bits of the key with the score
+ * in the lower 16 bits, so an entry can't be read half written and the cache
+ * doesn't allocate anything after it is created. Each search thread must have
+ * its own cache.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class EvaluationCache
+{
+    /**
+     * Mixed into the key when it is white's turn. The score depends on whose
+     * turn it is, while the state hash alone does not say.
+     */
+    private static final long PLAYER_KEY = 0x5DEECE66DA3B9F4BL;
+    
+    /**
+     * Masks the part of an entry holding the score.
+     */
+    private static final long SCORE_MASK = 0xFFFFL;
+    
+    /**
+     * Returned when a state is not in the cache.
+     */
+    public static final int   NO_VALUE   = Integer.MIN_VALUE;
+    
+    private final long[]      m_entries;
+    private final int         m_indexMask;
+    private long              m_probes;
+    private long              m_hits;
+    
+    /**
+     * Constructs an evaluation cache.
+     * 
+     * @param size
+     *            The size in megabytes to reserve for the cache. The number of
+     *            entries is rounded down to a power of two.
+     */
+    public EvaluationCache(int size)
+    {
+        int entryCount = Integer.highestOneBit((int)Math.min(Math.max(((long)size * 1024 * 1024) / 8, 1), 1 << 30));
+        m_entries = new long[entryCount];
+        m_indexMask = entryCount - 1;
+    }
+    
+    /**
+     * Gets the score of a state if it is stored in the cache.
+     * 
+     * @param hash
+     *            The hash of the state.
+     * @param turnPlayer
+     *            The turn player.
+     * @return The score of the state, or NO_VALUE if it is not stored.
+     */
+    public int get(long hash, int turnPlayer)
+    {
+        long key = getKey(hash, turnPlayer);
+        long entry = m_entries[(int)key & m_indexMask];
+        m_probes++;
+        
+        if ((entry & ~SCORE_MASK) == (key & ~SCORE_MASK))
+        {
+            m_hits++;
+            return (short)entry;
+        }
+        return NO_VALUE;
+    }
+    
+    /**
+     * Stores the score of a state.
+     * 
+     * @param hash
+     *            The hash of the state.
+     * @param turnPlayer
+     *            The turn player.
+     * @param score
+     *            The score of the state.
+     */
+    public void put(long hash, int turnPlayer, short score)
+    {
+        long key = getKey(hash, turnPlayer);
+        m_entries[(int)key & m_indexMask] = (key & ~SCORE_MASK) | (score & SCORE_MASK);
+    }
+    
+    /**
+     * Gets the key of a state in the cache.
+     */
+    private static long getKey(long hash, int turnPlayer)
+    {
+        return turnPlayer == StateExplorer.WHITE ? hash ^ PLAYER_KEY : hash;
+    }
+    
+    /**
+     * Gets the number of lookups since the statistics were last reset.
+     */
+    public long getProbes()
+    {
+        return m_probes;
+    }
+    
+    /**
+     * Gets the number of lookups that found a score since the statistics were
+     * last reset.
+     */
+    public long getHits()
+    {
+        return m_hits;
+    }
+    
+    /**
+     * Resets the lookup statistics.
+     */
+    public void resetStats()
+    {
+        m_probes = 0;
+        m_hits = 0;
+    }
+}
@@ -12,6 +12,13 @@ public class Evaluator
      */
     public static final short     WIN_VALUE                          = 30000;
     
+    /**
+     * How many more threats one player may have than the other before the threats
+     * could move the score past the search window after a lazy evaluation. The
+     * difference is within this on nearly all boards.
+     */
+    private static final int      LAZY_MARGIN_THREATS                = 5;
+    
     /**
      * The mapping from piece type and location to net value.
      */
@@ -155,14 +162,8 @@ public class Evaluator
     private final int        kingDistanceValue;
     private final int        kingCornerMoveValue;
     
-    private final BitBoard[] m_blackLegalMoves    = new BitBoard[16];
     private final BitBoard   m_allBlackLegalMoves = new BitBoard();
-    private final BitBoard[] m_whiteLegalMoves    = new BitBoard[8];
-    private final BitBoard   m_kingLegalMoves     = new BitBoard();
     private final BitBoard   m_allWhiteLegalMoves = new BitBoard();
-    private final BitBoard   m_pieces             = new BitBoard();
-    private final BitBoard   m_piecesReflected    = new BitBoard();
-    private final BitBoard   m_kingExitCorner     = new BitBoard();
     private final BitBoard   m_threats            = new BitBoard();
     
     /**
@@ -203,84 +204,74 @@ public class Evaluator
         this.kingMoveValue = kingMoveValue;
         this.kingDistanceValue = kingDistanceValue;
         this.kingCornerMoveValue = kingCornerMoveValue;
-        
-        for (int i = 0; i < m_blackLegalMoves.length; i++)
-        {
-            m_blackLegalMoves[i] = new BitBoard();
-        }
-        for (int i = 0; i < m_whiteLegalMoves.length; i++)
-        {
-            m_whiteLegalMoves[i] = new BitBoard();
-        }
     }
     
     /**
-     * Gets the value of the board for black.
+     * Contructs a new Evaluator instance with the same weightings as another.
+     * Evaluators keep working state between calls, so each thread evaluating
+     * boards needs its own instance.
+     * 
+     * @param other
+     *            The evaluator to copy the weightings from.
+     */
+    public Evaluator(Evaluator other)
+    {
+        this(other.squareValueMultiplier, other.blackPieceValue, other.whitePieceValue, other.threatValue,
+                other.moveValue, other.kingMoveValue, other.kingDistanceValue, other.kingCornerMoveValue);
+    }
+    
+    /**
+     * Gets the value of the board for the turn player.
      * 
      * @param state
      *            The state to evaluate.
      * @param turnPlayer
      *            The turn player.
-     * @return The value of the board for black.
+     * @return The value of the board for the turn player.
      */
     public short evaluate(State state, int turnPlayer)
     {
-        state.updatePieceLists();
-        
-        m_pieces.copy(state.black);
-        m_pieces.or(state.white);
-        m_pieces.set(state.kingSquare);
-        m_piecesReflected.copy(m_pieces);
-        m_piecesReflected.mirrorDiagonal();
-        
+        return evaluate(state, turnPlayer, -Short.MAX_VALUE, Short.MAX_VALUE);
+    }
+    
+    /**
+     * Gets the value of the board for the turn player, only computing it exactly
+     * when it could fall within a search window. The cheap terms are computed
+     * first, and if they put the value far enough outside the window the threats
+     * are not counted.
+     * 
+     * @param state
+     *            The state to evaluate.
+     * @param turnPlayer
+     *            The turn player.
+     * @param a
+     *            The alpha value.
+     * @param b
+     *            The beta value.
+     * @return The value of the board for the turn player. If not within the
+     *         window, it may be missing the threats.
+     */
+    public short evaluate(State state, int turnPlayer, int a, int b)
+    {
+        // The state keeps the piece lists, square values, and the moves along each
+        // row and column up to date as moves are made, so only the parts of the
+        // evaluation that combine them are computed here.
         int kingCol = state.kingSquare % 9;
         int kingRow = state.kingSquare / 9;
         
-        // get the legal moves for each black piece
-        int blackSquareValues = 0;
-        int blackMovableSquares = 0;
         int blackKingDistance = 0;
-        for (int i = 0; i < state.blackCount; i++)
-        {
-            int square = state.blackPieces[i];
-            blackSquareValues += SQUARE_VALUES[0][square];
-            BitBoard legalMoves = m_blackLegalMoves[i];
-            BitBoardConsts.getLegalMoves(square, false, m_pieces, m_piecesReflected, legalMoves);
-            m_allBlackLegalMoves.or(legalMoves);
-            blackMovableSquares += legalMoves.cardinality();
-            blackKingDistance += Math.abs(kingCol - (square % 9)) + Math.abs(kingRow - (square / 9));
-        }
         if (state.blackCount > 0)
         {
-            blackKingDistance /= state.blackCount;
+            blackKingDistance = state.blackKingDistance / state.blackCount;
         }
         
-        // get the legal moves for each white piece
-        int whiteSquareValues = 0;
-        int whiteMovableSquares = 0;
-        for (int i = 0; i < state.whiteCount; i++)
-        {
-            int square = state.whitePieces[i];
-            whiteSquareValues += SQUARE_VALUES[1][square];
-            BitBoard legalMoves = m_whiteLegalMoves[i];
-            BitBoardConsts.getLegalMoves(square, false, m_pieces, m_piecesReflected, legalMoves);
-            m_allWhiteLegalMoves.or(legalMoves);
-            whiteMovableSquares += legalMoves.cardinality();
-        }
-        
-        // get the legal moves for the king
-        whiteSquareValues += SQUARE_VALUES[2][state.kingSquare];
-        BitBoardConsts.getLegalMoves(state.kingSquare, false, m_pieces, m_piecesReflected, m_kingLegalMoves);
-        m_allWhiteLegalMoves.or(m_kingLegalMoves);
-        int kingMovableSquares = m_kingLegalMoves.cardinality();
+        int blackMovableSquares = state.blackMobility;
+        int whiteMovableSquares = state.whiteMobility;
+        int kingMovableSquares = Integer.bitCount(state.kingRowMoves) + Integer.bitCount(state.kingColMoves);
         
         // calculate the value of the board for black
         int valueForBlack = -(8 * blackPieceValue);
         
-        // get the number of threating moves each player can make
-        valueForBlack += countThreats(state.white, state.black, m_allBlackLegalMoves) * threatValue;
-        valueForBlack -= countThreats(state.black, state.white, m_allWhiteLegalMoves) * threatValue;
-        
         // black does better when it's pieces are near to the king
         valueForBlack -= blackKingDistance * kingDistanceValue;
         
@@ -289,16 +280,23 @@ public class Evaluator
         valueForBlack -= (whiteMovableSquares * moveValue) + (kingMovableSquares * kingMoveValue);
         
         // get the value for the pieces based on their current squares
-        valueForBlack += (blackSquareValues - whiteSquareValues) * squareValueMultiplier;
+        valueForBlack += state.squareValues * squareValueMultiplier;
         
         // get the piece difference
         valueForBlack += state.blackCount * blackPieceValue;
         valueForBlack -= state.whiteCount * whitePieceValue;
         
         // black does poorly if the king can reach a corner
-        m_kingExitCorner.copy(m_kingLegalMoves);
-        m_kingExitCorner.and(BitBoardConsts.corners);
-        switch (m_kingExitCorner.cardinality())
+        int kingExitCorners = 0;
+        if (kingRow == 0 || kingRow == 8)
+        {
+            kingExitCorners += Integer.bitCount(state.kingRowMoves & 0b100000001);
+        }
+        if (kingCol == 0 || kingCol == 8)
+        {
+            kingExitCorners += Integer.bitCount(state.kingColMoves & 0b100000001);
+        }
+        switch (kingExitCorners)
         {
             case 1:
                 if (turnPlayer == StateExplorer.BLACK)
@@ -309,15 +307,35 @@ public class Evaluator
                 else
                 {
                     // black loses next turn
-                    valueForBlack = -WIN_VALUE;
+                    return WIN_VALUE;
                 }
                 break;
             case 2:
                 // black loses next turn
-                valueForBlack = -WIN_VALUE;
-                break;
+                return (turnPlayer == StateExplorer.BLACK) ? -WIN_VALUE : WIN_VALUE;
         }
         
+        // if the threats can't bring the value back into the window don't count them
+        int value = (turnPlayer == StateExplorer.BLACK) ? valueForBlack : -valueForBlack;
+        int margin = LAZY_MARGIN_THREATS * threatValue;
+        if (value + margin <= a || value - margin >= b)
+        {
+            return (short)value;
+        }
+        
+        // get the squares each player can move to
+        m_allBlackLegalMoves.copy(state.blackColMovesRefl);
+        m_allBlackLegalMoves.mirrorDiagonal();
+        m_allBlackLegalMoves.or(state.blackRowMoves);
+        
+        m_allWhiteLegalMoves.copy(state.whiteColMovesRefl);
+        m_allWhiteLegalMoves.mirrorDiagonal();
+        m_allWhiteLegalMoves.or(state.whiteRowMoves);
+        
+        // get the number of threating moves each player can make
+        valueForBlack += countThreats(state.white, state.black, m_allBlackLegalMoves) * threatValue;
+        valueForBlack -= countThreats(state.black, state.white, m_allWhiteLegalMoves) * threatValue;
+        
         return (turnPlayer == StateExplorer.BLACK) ? (short)valueForBlack : (short)-valueForBlack;
     }
     
@@ -334,21 +352,21 @@ public class Evaluator
         m_threats.and(opponentPieces);
         m_threats.shiftRightTwo();
         threatCount += BitBoard.andCount(m_threats, opponentMoves);
-
+        
         // potential captures from squares left
         m_threats.copy(pieces);
         m_threats.shiftRightOne();
         m_threats.and(opponentPieces);
         m_threats.shiftLeftTwo();
         threatCount += BitBoard.andCount(m_threats, opponentMoves);
-
+        
         // potential captures from squares above
         m_threats.copy(pieces);
         m_threats.shiftUpOne();
         m_threats.and(opponentPieces);
         m_threats.shiftDownTwo();
         threatCount += BitBoard.andCount(m_threats, opponentMoves);
-
+        
         // potential captures from squares below
         m_threats.copy(pieces);
         m_threats.shiftDownOne();
@@ -0,0 +1,85 @@
+package student_player;
+
+/**
+ * Implements the history heuristic by keeping a score for every move each
+ * player could make, increased whenever the move causes a beta cut-off. Quiet
+ * moves that have caused many cut-offs anywhere in the tree are likely to be
+ * good in other positions as well, so they are searched first.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class HistoryTable
+{
+    /**
+     * The number of distinct packed moves, with the source square in bits 0-6
+     * and the destination square in bits 7-13.
+     */
+    private static final int MOVE_COUNT  = 1 << 14;
+    
+    /**
+     * The largest score a move may reach before all scores are scaled down. Kept
+     * small enough that a score can be packed with a move index in a positive
+     * integer.
+     */
+    public static final int  MAX_SCORE   = 1 << 16;
+    
+    private final int[][]    m_scores    = new int[2][MOVE_COUNT];
+    
+    /**
+     * Scales down all the scores, so that moves that were good in previous
+     * searches still come before unknown moves, but are quickly overtaken by
+     * moves that are good in the current search.
+     */
+    public void age()
+    {
+        for (int[] scores : m_scores)
+        {
+            for (int i = 0; i < scores.length; i++)
+            {
+                scores[i] >>= 1;
+            }
+        }
+    }
+    
+    /**
+     * Increases the score of a move that caused a beta cut-off.
+     * 
+     * @param player
+     *            The player that made the move.
+     * @param move
+     *            The move played.
+     * @param depth
+     *            The depth left to search at the node the move was made from.
+     */
+    public void add(int player, int move, int depth)
+    {
+        int[] scores = m_scores[player];
+        int index = move & 0x3FFF;
+        
+        // Cut-offs nearer the root save far more work, so they count for much more.
+        // Weighting by depth^4 ordered better than depth^2 on the test positions.
+        // The weight is capped so a single age always brings the score back under
+        // the maximum, which the counter move's score must stay above.
+        int weight = depth * depth;
+        scores[index] += Math.min(weight * weight, MAX_SCORE / 2);
+        
+        if (scores[index] >= MAX_SCORE)
+        {
+            age();
+        }
+    }
+    
+    /**
+     * Gets the score of a move.
+     * 
+     * @param player
+     *            The player making the move.
+     * @param move
+     *            The move to check.
+     * @return The score, in the range [0, 2^16).
+     */
+    public int get(int player, int move)
+    {
+        return m_scores[player][move & 0x3FFF];
+    }
+}
@@ -0,0 +1,59 @@
+package student_player;
+
+import java.io.PrintStream;
+
+/**
+ * Prints a line for each iteration, in a form meant for reading while watching
+ * a game.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class LogTelemetrySink implements TelemetrySink
+{
+    private final PrintStream m_out;
+    
+    /**
+     * Creates a sink that prints to a stream.
+     * 
+     * @param out
+     *            The stream to print to.
+     */
+    public LogTelemetrySink(PrintStream out)
+    {
+        m_out = out;
+    }
+    
+    @Override
+    public synchronized void iterationDone(int turn, int depth, int score, int[] pv, int pvLength, long elapsed,
+            SearchStats stats)
+    {
+        m_out.println(String.format(
+                "Ply %d, depth %d: score %d, %.1f ms, %d nodes (%d quiescence), %d nodes/s, %.1f%% TT hits, "
+                        + "%d TT cut-offs, %.1f%% first move cut-offs, %d killer cut-offs, %d re-searches, "
+                        + "%d aspiration re-searches, EBF %.2f, pv %s",
+                turn, depth, score, elapsed / 1000000.0, stats.nodes, stats.quiescenceNodes,
+                (long)(stats.nodes / Math.max(elapsed / 1000000000.0, 1e-9)), 100.0 * stats.getTableHitRate(),
+                stats.tableCutoffs, 100.0 * stats.getFirstMoveCutoffRate(), stats.killerCutoffs, stats.researches,
+                stats.aspirationResearches, stats.getBranchingFactor(), formatPV(pv, pvLength)));
+    }
+    
+    /**
+     * Writes the principal variation as moves like "3,0-3,2" separated by spaces.
+     */
+    static String formatPV(int[] pv, int pvLength)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < pvLength; i++)
+        {
+            int from = pv[i] & 0x7F;
+            int to = (pv[i] >> 7) & 0x7F;
+            if (i > 0)
+            {
+                builder.append(' ');
+            }
+            builder.append(from % 9).append(',').append(from / 9).append('-').append(to % 9).append(',')
+                    .append(to / 9);
+        }
+        return builder.toString();
+    }
+}
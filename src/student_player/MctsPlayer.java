@@ -0,0 +1,280 @@
+package student_player;
+
+import boardgame.BoardState;
+import boardgame.Move;
+import boardgame.Server;
+import coordinates.Coord;
+import tablut.TablutBoardState;
+import tablut.TablutMove;
+import tablut.TablutPlayer;
+
+/**
+ * A second player that uses Monte Carlo tree search instead of alpha-beta. All
+ * the search threads grow one shared tree, and the part of the tree below the
+ * moves actually played is kept for the next turn. Run it in place of
+ * StudentPlayer by giving the client "student_player.MctsPlayer".
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class MctsPlayer extends TablutPlayer
+{
+    /**
+     * The most time allowed to think during the first turn in nanoseconds.
+     */
+    private static final long     START_TURN_TIMEOUT = (long)(9.95 * 1000000000);
+    
+    /**
+     * The most time allowed to think during turns following the first turn in
+     * nanoseconds. Kept a little under the server's limit to leave time for the
+     * move to be sent.
+     */
+    private static final long     TURN_TIMEOUT       = (Server.DEFAULT_TIMEOUT - 50) * 1000000L;
+    
+    /**
+     * The fraction of the time allowed that is spent searching. Unlike the
+     * alpha-beta search there are no iterations to finish, so most of the time is
+     * used, but some is left for the threads to stop.
+     */
+    private static final double   TIME_FRACTION      = 0.9;
+    
+    /**
+     * The number of nodes the tree can hold. Each node takes 20 bytes. May be set
+     * with the "student_player.mctsnodes" system property.
+     */
+    private static final int      TREE_CAPACITY      = Integer.getInteger("student_player.mctsnodes", 4 * 1024 * 1024);
+    
+    /**
+     * The number of threads to search with. Defaults to one per available
+     * processor, and may be overridden with the "student_player.threads" system
+     * property.
+     */
+    private static final int      THREAD_COUNT       = Integer.getInteger("student_player.threads",
+            Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * Indicates if search statistics should be printed after every turn. Enabled
+     * with the "student_player.stats" system property.
+     */
+    private static final boolean  PRINT_STATS        = Boolean.getBoolean("student_player.stats");
+    
+    private final MctsTree        m_tree             = new MctsTree(TREE_CAPACITY);
+    private final MctsSearcher[]  m_searchers;
+    private final Thread[]        m_threads;
+    private int                   m_treeTurn         = -1;
+    
+    /**
+     * Associate this player implementation with my student ID.
+     */
+    public MctsPlayer()
+    {
+        this(THREAD_COUNT);
+    }
+    
+    /**
+     * Creates a player that searches using the given number of threads.
+     * 
+     * @param threadCount
+     *            The number of threads to search with.
+     */
+    public MctsPlayer(int threadCount)
+    {
+        super("260617022");
+        
+        m_searchers = new MctsSearcher[Math.max(threadCount, 1)];
+        for (int i = 0; i < m_searchers.length; i++)
+        {
+            m_searchers[i] = new MctsSearcher(m_tree, new Evaluator(StudentPlayer.m_evaluator), System.nanoTime() + i);
+        }
+        m_threads = new Thread[m_searchers.length];
+    }
+    
+    /**
+     * Called whenever a move is received from the server, including our own. The
+     * tree moves down to the node for the new state, keeping what was learned
+     * about it.
+     * 
+     * @param boardState
+     *            The board state after the move.
+     * @param move
+     *            The move that was played.
+     */
+    @Override
+    public void movePlayed(BoardState boardState, Move move)
+    {
+        TablutBoardState state = (TablutBoardState)boardState;
+        
+        // the tree is only useful if it is for the state the move was played from
+        if (m_treeTurn == getTurnIndex(state) - 1)
+        {
+            m_tree.advance(toPackedMove((TablutMove)move), m_tree.capacity() / 2);
+        }
+        else
+        {
+            m_tree.clear();
+        }
+        m_treeTurn = getTurnIndex(state);
+    }
+    
+    /**
+     * Decides on a move to play.
+     * 
+     * @param boardState
+     *            The current state of the board.
+     * @return The chosen move.
+     */
+    public Move chooseMove(TablutBoardState boardState)
+    {
+        // get the time we want to have a result by
+        long startTime = System.nanoTime();
+        long timeout = boardState.getTurnNumber() == 0 ? START_TURN_TIMEOUT : TURN_TIMEOUT;
+        long stopTime = startTime + (long)(timeout * TIME_FRACTION);
+        
+        if (m_treeTurn != getTurnIndex(boardState))
+        {
+            m_tree.clear();
+            m_treeTurn = getTurnIndex(boardState);
+        }
+        long reusedVisits = m_tree.getStats(m_tree.getRoot()) >>> 32;
+        
+        for (int i = 0; i < m_threads.length; i++)
+        {
+            m_searchers[i].setRoot(boardState, stopTime);
+            m_threads[i] = new Thread(m_searchers[i], "MCTS Searcher " + i);
+            m_threads[i].setDaemon(true);
+            m_threads[i].start();
+        }
+        for (Thread thread : m_threads)
+        {
+            join(thread);
+        }
+        
+        int move = getMostVisitedMove();
+        
+        if (PRINT_STATS)
+        {
+            printStats(boardState.getTurnNumber(), System.nanoTime() - startTime, reusedVisits);
+        }
+        
+        if (move != 0)
+        {
+            return toTablutMove(move, boardState.getTurnPlayer());
+        }
+        else
+        {
+            return boardState.getRandomMove();
+        }
+    }
+    
+    /**
+     * Stops the search threads once the game is over.
+     */
+    @Override
+    public void gameOver(String msg, BoardState boardState)
+    {
+        for (MctsSearcher searcher : m_searchers)
+        {
+            searcher.stop();
+        }
+        m_tree.clear();
+        m_treeTurn = -1;
+    }
+    
+    /**
+     * Gets the move of the root's child with the most visits, which is the move
+     * the search is most sure of.
+     * 
+     * @return The move, or 0 if the root was never expanded.
+     */
+    private int getMostVisitedMove()
+    {
+        int root = m_tree.getRoot();
+        int firstChild = m_tree.getFirstChild(root);
+        if (firstChild < 0)
+        {
+            return 0;
+        }
+        
+        int bestMove = 0;
+        long bestVisits = -1;
+        for (int child = firstChild; child < firstChild + m_tree.getChildCount(root); child++)
+        {
+            long visits = m_tree.getStats(child) >>> 32;
+            if (visits > bestVisits)
+            {
+                bestMove = m_tree.getMove(child);
+                bestVisits = visits;
+            }
+        }
+        return bestMove;
+    }
+    
+    /**
+     * Prints the number of playouts and how the tree has grown.
+     * 
+     * @param turn
+     *            The current turn number.
+     * @param elapsed
+     *            The time spent searching in nanoseconds.
+     * @param reusedVisits
+     *            The visits to the root kept from the previous turn.
+     */
+    private void printStats(int turn, long elapsed, long reusedVisits)
+    {
+        long playouts = 0;
+        for (MctsSearcher searcher : m_searchers)
+        {
+            playouts += searcher.getPlayoutCount();
+        }
+        
+        int root = m_tree.getRoot();
+        long rootStats = m_tree.getStats(root);
+        System.out.println(String.format(
+                "Turn %d: %d threads, %d playouts, %d playouts/s, %d visits reused, %d/%d nodes, root value %.3f",
+                turn, m_searchers.length, playouts, (long)(playouts / (elapsed / 1000000000.0)), reusedVisits,
+                m_tree.size(), m_tree.capacity(),
+                1.0 - ((rootStats & 0xFFFFFFFFL) / (2.0 * Math.max(rootStats >>> 32, 1)))));
+    }
+    
+    /**
+     * Converts a move from the server to a packed move integer.
+     */
+    private static int toPackedMove(TablutMove move)
+    {
+        Coord from = move.getStartPosition();
+        Coord to = move.getEndPosition();
+        return ((from.y * 9) + from.x) | (((to.y * 9) + to.x) << 7);
+    }
+    
+    /**
+     * Converts a packed move integer to a move that can be sent to the server.
+     */
+    private static TablutMove toTablutMove(int move, int player)
+    {
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
+        return new TablutMove(from % 9, from / 9, to % 9, to / 9, player);
+    }
+    
+    /**
+     * Gets the number of moves made by both players before a board state.
+     */
+    private static int getTurnIndex(TablutBoardState boardState)
+    {
+        return (2 * boardState.getTurnNumber()) + boardState.getTurnPlayer();
+    }
+    
+    /**
+     * Waits for a thread to finish.
+     */
+    private static void join(Thread thread)
+    {
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
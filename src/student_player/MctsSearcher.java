@@ -0,0 +1,332 @@
+package student_player;
+
+import boardgame.Board;
+import tablut.TablutBoardState;
+
+/**
+ * Runs Monte Carlo tree search playouts on a shared tree. Each playout walks
+ * down the tree choosing children by UCT, expands the node it stops at once
+ * that node has been visited enough, plays out the rest of the game with a
+ * cheap policy, and adds the result to every node on the way back up.
+ * 
+ * Every searcher owns the state explorer and move buffers it uses, so several
+ * searchers can grow the same tree on different threads. See MctsTree for how
+ * they avoid stepping on each other.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class MctsSearcher implements Runnable
+{
+    /**
+     * Weights the exploration term of UCT against the average reward.
+     */
+    private static final double EXPLORATION    = 0.7;
+    
+    /**
+     * How many times a node must be visited before it is expanded. Keeps the
+     * tree from filling up with nodes that are only ever visited once.
+     */
+    private static final int    EXPAND_VISITS  = 8;
+    
+    /**
+     * The most moves played out before the game is called using the evaluator.
+     * Random games of Tablut take a long time to end, and the end of a long
+     * random game says little about the position it started from.
+     */
+    private static final int    PLAYOUT_LENGTH = 30;
+    
+    /**
+     * The percent of playout moves that are picked from the tactical moves when
+     * there are any. Winning moves are always played.
+     */
+    private static final int    TACTICAL_ODDS  = 80;
+    
+    /**
+     * How far the evaluation at the end of a playout must favour a player for
+     * the playout to count as a win rather than a draw.
+     */
+    private static final int    WIN_MARGIN     = 300;
+    
+    /**
+     * How many playouts are run between checks of the time.
+     */
+    private static final int    TIME_CHECK     = 16;
+    
+    private final MctsTree      m_tree;
+    private final Evaluator     m_evaluator;
+    private final int[]         m_moves        = new int[StateExplorer.MAX_LEGAL_MOVES];
+    private final int[]         m_path         = new int[StateExplorer.MAX_TURNS + 2];
+    
+    private StateExplorer       m_explorer;
+    private volatile long       m_stopTime;
+    private volatile boolean    m_stopped;
+    private long                m_random;
+    private long                m_playouts;
+    
+    /**
+     * Creates a new searcher.
+     * 
+     * @param tree
+     *            The tree shared by all searchers.
+     * @param evaluator
+     *            The evaluator used to call playouts that don't finish.
+     * @param seed
+     *            The seed for the playout policy's random numbers.
+     */
+    public MctsSearcher(MctsTree tree, Evaluator evaluator, long seed)
+    {
+        m_tree = tree;
+        m_evaluator = evaluator;
+        m_random = seed == 0 ? 1 : seed;
+    }
+    
+    /**
+     * Sets the state at the root of the tree, and the time by which the search
+     * must stop.
+     * 
+     * @param boardState
+     *            The root board state.
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     */
+    public void setRoot(TablutBoardState boardState, long stopTime)
+    {
+        m_explorer = new StateExplorer(m_evaluator, boardState);
+        m_stopTime = stopTime;
+        m_stopped = false;
+        m_playouts = 0;
+    }
+    
+    /**
+     * Gets the number of playouts done by the last search.
+     */
+    public long getPlayoutCount()
+    {
+        return m_playouts;
+    }
+    
+    /**
+     * Signals the search to finish as soon as possible. May be called from any
+     * thread.
+     */
+    public void stop()
+    {
+        m_stopped = true;
+    }
+    
+    @Override
+    public void run()
+    {
+        while (!m_stopped)
+        {
+            playout();
+            m_playouts++;
+            
+            if ((m_playouts % TIME_CHECK) == 0 && System.nanoTime() >= m_stopTime)
+            {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Runs one playout from the root and adds its result to the tree.
+     */
+    private void playout()
+    {
+        StateExplorer state = m_explorer;
+        int rootPlayer = state.getTurnPlayer();
+        int node = m_tree.getRoot();
+        int pathLength = 0;
+        int movesMade = 0;
+        
+        m_tree.addVisit(node);
+        m_path[pathLength++] = node;
+        
+        // walk down the tree, expanding the node where the walk leaves the tree
+        while (!state.isTerminal())
+        {
+            int firstChild = m_tree.getFirstChild(node);
+            boolean expanded = false;
+            
+            if (firstChild == MctsTree.UNEXPANDED
+                    && (node == m_tree.getRoot() || (m_tree.getStats(node) >>> 32) >= EXPAND_VISITS))
+            {
+                if (m_tree.tryClaim(node))
+                {
+                    int moveCount = state.getAllLegalMoves(m_moves);
+                    expanded = moveCount > 0 && m_tree.expand(node, m_moves, moveCount);
+                    firstChild = m_tree.getFirstChild(node);
+                }
+            }
+            
+            if (firstChild < 0)
+            {
+                break;
+            }
+            
+            node = selectChild(node, firstChild);
+            state.makeMove(m_tree.getMove(node));
+            movesMade++;
+            
+            m_tree.addVisit(node);
+            m_path[pathLength++] = node;
+            
+            if (expanded)
+            {
+                break;
+            }
+        }
+        
+        // play out the rest of the game
+        for (int i = 0; i < PLAYOUT_LENGTH && !state.isTerminal(); i++)
+        {
+            int move = getPlayoutMove(state);
+            if (move == 0)
+            {
+                break;
+            }
+            state.makeMove(move);
+            movesMade++;
+        }
+        
+        int winner = getResult(state);
+        
+        for (int i = 0; i < movesMade; i++)
+        {
+            state.unmakeMove();
+        }
+        
+        // Each node is rewarded from the view of the player who moved into it. The
+        // player to move alternates down the path starting from the root player.
+        for (int i = 0; i < pathLength; i++)
+        {
+            int mover = (rootPlayer + i + 1) % 2;
+            int reward = winner == mover ? 2 : (winner == Board.DRAW ? 1 : 0);
+            m_tree.addReward(m_path[i], reward);
+        }
+    }
+    
+    /**
+     * Chooses the child to walk down to using the UCT formula. Children that have
+     * never been visited are tried first, starting from a random one.
+     * 
+     * @param node
+     *            The expanded node.
+     * @param firstChild
+     *            The first child of the node.
+     * @return The chosen child.
+     */
+    private int selectChild(int node, int firstChild)
+    {
+        int childCount = m_tree.getChildCount(node);
+        double logVisits = Math.log(Math.max(m_tree.getStats(node) >>> 32, 1));
+        
+        int offset = nextInt(childCount);
+        int bestChild = firstChild;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        
+        for (int i = 0; i < childCount; i++)
+        {
+            int child = firstChild + ((i + offset) % childCount);
+            long stats = m_tree.getStats(child);
+            long visits = stats >>> 32;
+            
+            if (visits == 0)
+            {
+                return child;
+            }
+            
+            double value = ((stats & 0xFFFFFFFFL) / (2.0 * visits)) + (EXPLORATION * Math.sqrt(logVisits / visits));
+            if (value > bestValue)
+            {
+                bestChild = child;
+                bestValue = value;
+            }
+        }
+        return bestChild;
+    }
+    
+    /**
+     * Picks a move during a playout. Winning moves are always played. Otherwise
+     * the tactical moves of the most urgent kind, such as blocking the king or
+     * making the most captures, are usually played, and the rest of the time any
+     * legal move is picked at random.
+     * 
+     * @return The move, or 0 if the player can't move.
+     */
+    private int getPlayoutMove(StateExplorer state)
+    {
+        int tacticalCount = state.getTacticalMoves(m_moves);
+        if (tacticalCount > 0)
+        {
+            // the classification bits order the moves by urgency
+            int bestKind = 0;
+            int bestCount = 0;
+            for (int i = 0; i < tacticalCount; i++)
+            {
+                int kind = m_moves[i] >>> 24;
+                if (kind > bestKind)
+                {
+                    bestKind = kind;
+                    bestCount = 0;
+                }
+                if (kind == bestKind)
+                {
+                    m_moves[bestCount++] = m_moves[i];
+                }
+            }
+            
+            boolean isWin = ((bestKind << 24) & ((1 << 30) | (1 << 29))) != 0;
+            if (isWin || nextInt(100) < TACTICAL_ODDS)
+            {
+                return m_moves[nextInt(bestCount)] & 0x3FFF;
+            }
+        }
+        
+        int moveCount = state.getAllLegalMoves(m_moves);
+        return moveCount > 0 ? m_moves[nextInt(moveCount)] : 0;
+    }
+    
+    /**
+     * Gets the result of a finished playout.
+     * 
+     * @return The winning player, or Board.DRAW.
+     */
+    private int getResult(StateExplorer state)
+    {
+        int winner = state.getWinner();
+        if (winner != Board.NOBODY)
+        {
+            return winner;
+        }
+        if (state.isTerminal())
+        {
+            return Board.DRAW;
+        }
+        
+        // call the game using the evaluation, which is from the view of the turn player
+        int score = state.evaluate();
+        if (score > WIN_MARGIN)
+        {
+            return state.getTurnPlayer();
+        }
+        if (score < -WIN_MARGIN)
+        {
+            return 1 - state.getTurnPlayer();
+        }
+        return Board.DRAW;
+    }
+    
+    /**
+     * Gets a random number from 0 up to but not including a bound, using an
+     * xorshift generator so no objects are needed.
+     */
+    private int nextInt(int bound)
+    {
+        m_random ^= m_random << 13;
+        m_random ^= m_random >>> 7;
+        m_random ^= m_random << 17;
+        return (int)((m_random >>> 33) % bound);
+    }
+}
@@ -0,0 +1,277 @@
+package student_player;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The search tree of the Monte Carlo tree search player. Nodes are not objects,
+ * but indices into arrays allocated once up front, so growing the tree creates
+ * no garbage. The children of a node are allocated as one contiguous block, so
+ * a node only needs to know where its first child is and how many it has.
+ * 
+ * The tree is shared by all the search threads without locks. A node's visit
+ * count and total reward are packed into one long, visits in the upper 32 bits
+ * and reward in the lower 32, so both are updated by one atomic add. A visit is
+ * added when a thread passes through a node on the way down and the reward only
+ * once the playout is done, so while a playout is in flight the node looks
+ * like it lost. This virtual loss steers the other threads toward different
+ * paths. Rewards are counted in half points, 2 for a win and 1 for a draw.
+ * 
+ * A node is expanded by the first thread to claim it, and the other threads
+ * play out from the node until its children are published.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class MctsTree
+{
+    /**
+     * The first child of a node that has not been expanded.
+     */
+    public static final int          UNEXPANDED = -1;
+    
+    /**
+     * The first child of a node that a thread is expanding.
+     */
+    public static final int          EXPANDING  = -2;
+    
+    /**
+     * The index of no node.
+     */
+    public static final int          NO_NODE    = -1;
+    
+    /**
+     * Added to a node's statistics for one visit.
+     */
+    public static final long         VISIT      = 1L << 32;
+    
+    private final int[]              m_moves;
+    private final int[]              m_childCounts;
+    private final AtomicIntegerArray m_firstChildren;
+    private final AtomicLongArray    m_stats;
+    private final AtomicInteger      m_nodeCount = new AtomicInteger();
+    private int                      m_root;
+    
+    /**
+     * Constructs a tree.
+     * 
+     * @param capacity
+     *            The most nodes the tree can hold.
+     */
+    public MctsTree(int capacity)
+    {
+        m_moves = new int[capacity];
+        m_childCounts = new int[capacity];
+        m_firstChildren = new AtomicIntegerArray(capacity);
+        m_stats = new AtomicLongArray(capacity);
+        clear();
+    }
+    
+    /**
+     * Removes every node and starts a new tree with only a root.
+     */
+    public void clear()
+    {
+        m_nodeCount.set(0);
+        m_root = allocate(1);
+        init(m_root, 0);
+    }
+    
+    /**
+     * Gets the root node.
+     */
+    public int getRoot()
+    {
+        return m_root;
+    }
+    
+    /**
+     * Gets the number of nodes allocated.
+     */
+    public int size()
+    {
+        return m_nodeCount.get();
+    }
+    
+    /**
+     * Gets the most nodes the tree can hold.
+     */
+    public int capacity()
+    {
+        return m_moves.length;
+    }
+    
+    /**
+     * Makes the child of the root reached by a move the new root, keeping its
+     * subtree. The rest of the tree is not freed, so if not enough space would be
+     * left for the search the whole tree is cleared instead. Must not be called
+     * while searching.
+     * 
+     * @param move
+     *            The move played, with the source square in bits 0-6 and the
+     *            destination square in bits 7-13.
+     * @param minFreeNodes
+     *            The least number of free nodes to keep for the next search.
+     * @return True if the subtree was kept.
+     */
+    public boolean advance(int move, int minFreeNodes)
+    {
+        int child = findChild(m_root, move);
+        if (child == NO_NODE || capacity() - size() < minFreeNodes)
+        {
+            clear();
+            return false;
+        }
+        m_root = child;
+        return true;
+    }
+    
+    /**
+     * Finds the child of a node reached by a move.
+     * 
+     * @return The child, or NO_NODE if the node is not expanded or has no such
+     *         child.
+     */
+    public int findChild(int node, int move)
+    {
+        int firstChild = m_firstChildren.get(node);
+        if (firstChild < 0)
+        {
+            return NO_NODE;
+        }
+        for (int i = firstChild; i < firstChild + m_childCounts[node]; i++)
+        {
+            if (m_moves[i] == move)
+            {
+                return i;
+            }
+        }
+        return NO_NODE;
+    }
+    
+    /**
+     * Gets the move that leads to a node.
+     */
+    public int getMove(int node)
+    {
+        return m_moves[node];
+    }
+    
+    /**
+     * Gets the first child of a node, or UNEXPANDED or EXPANDING.
+     */
+    public int getFirstChild(int node)
+    {
+        return m_firstChildren.get(node);
+    }
+    
+    /**
+     * Gets the number of children of an expanded node.
+     */
+    public int getChildCount(int node)
+    {
+        return m_childCounts[node];
+    }
+    
+    /**
+     * Gets the visit count and total reward of a node, packed into a long.
+     */
+    public long getStats(int node)
+    {
+        return m_stats.get(node);
+    }
+    
+    /**
+     * Counts a visit to a node at the start of a playout.
+     */
+    public void addVisit(int node)
+    {
+        m_stats.getAndAdd(node, VISIT);
+    }
+    
+    /**
+     * Adds the reward of a finished playout to a node.
+     * 
+     * @param reward
+     *            The reward in half points for the player who moved into the
+     *            node.
+     */
+    public void addReward(int node, int reward)
+    {
+        m_stats.getAndAdd(node, reward);
+    }
+    
+    /**
+     * Tries to claim a node for expansion.
+     * 
+     * @return True if the calling thread must now expand the node.
+     */
+    public boolean tryClaim(int node)
+    {
+        return m_firstChildren.compareAndSet(node, UNEXPANDED, EXPANDING);
+    }
+    
+    /**
+     * Adds the children of a claimed node. If the tree is full the claim is
+     * released, and the node stays unexpanded.
+     * 
+     * @param node
+     *            The node to expand.
+     * @param moves
+     *            The legal moves from the node.
+     * @param moveCount
+     *            The number of legal moves.
+     * @return True if the children were added.
+     */
+    public boolean expand(int node, int[] moves, int moveCount)
+    {
+        int firstChild = allocate(moveCount);
+        if (firstChild == NO_NODE)
+        {
+            m_firstChildren.set(node, UNEXPANDED);
+            return false;
+        }
+        
+        for (int i = 0; i < moveCount; i++)
+        {
+            init(firstChild + i, moves[i] & 0x3FFF);
+        }
+        m_childCounts[node] = moveCount;
+        
+        // publishing the first child makes the children visible to other threads
+        m_firstChildren.set(node, firstChild);
+        return true;
+    }
+    
+    /**
+     * Reserves a block of nodes.
+     * 
+     * @return The first node of the block, or NO_NODE if the tree is full.
+     */
+    private int allocate(int count)
+    {
+        while (true)
+        {
+            int first = m_nodeCount.get();
+            if (first + count > m_moves.length)
+            {
+                return NO_NODE;
+            }
+            if (m_nodeCount.compareAndSet(first, first + count))
+            {
+                return first;
+            }
+        }
+    }
+    
+    /**
+     * Resets a newly allocated node.
+     */
+    private void init(int node, int move)
+    {
+        m_moves[node] = move;
+        m_childCounts[node] = 0;
+        m_stats.set(node, 0);
+        m_firstChildren.set(node, UNEXPANDED);
+    }
+}
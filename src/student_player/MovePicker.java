@@ -0,0 +1,253 @@
+package student_player;
+
+import java.util.Arrays;
+
+/**
+ * Produces the moves at a search node in stages, from the most to the least
+ * promising. The work needed to order each stage is only done once the stage
+ * is reached, so nodes that get a cut-off from one of the first moves don't pay
+ * for classifying every move. The transposition table move is searched before
+ * the picker is used, so it is skipped here. The stages are:
+ * <ol>
+ * <li>A move to try first, such as one found by internal iterative deepening.
+ * <li>Winning moves and captures, most captures first.
+ * <li>Killer moves.
+ * <li>Moves that block or open the king's route to a corner.
+ * <li>Quiet moves, the counter move first, then by history score.
+ * </ol>
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class MovePicker
+{
+    private static final int       STAGE_FIRST    = 0;
+    private static final int       STAGE_GENERATE = 1;
+    private static final int       STAGE_CAPTURES = 2;
+    private static final int       STAGE_KILLERS  = 3;
+    private static final int       STAGE_CLASSIFY = 4;
+    private static final int       STAGE_KING     = 5;
+    private static final int       STAGE_QUIET    = 6;
+    private static final int       STAGE_DONE     = 7;
+    
+    private final KillerTable      m_killers;
+    private final HistoryTable     m_history;
+    private final int[]            m_moves        = new int[StateExplorer.MAX_LEGAL_MOVES];
+    private final int[]            m_captures     = new int[StateExplorer.MAX_LEGAL_MOVES];
+    private final int[]            m_kingMoves    = new int[StateExplorer.MAX_LEGAL_MOVES];
+    private final int[]            m_quietMoves   = new int[StateExplorer.MAX_LEGAL_MOVES];
+    
+    private StateExplorer          m_state;
+    private int                    m_ply;
+    private int                    m_skipMove;
+    private int                    m_firstMove;
+    private int                    m_counterMove;
+    private int                    m_stage;
+    private int                    m_index;
+    private int                    m_moveCount;
+    
+    /**
+     * Creates a new move picker.
+     * 
+     * @param killers
+     *            The killer moves table used by the search.
+     * @param history
+     *            The history table used by the search.
+     */
+    public MovePicker(KillerTable killers, HistoryTable history)
+    {
+        m_killers = killers;
+        m_history = history;
+    }
+    
+    /**
+     * Prepares to pick moves from a new node.
+     * 
+     * @param state
+     *            The current search node.
+     * @param ply
+     *            The ply of the node.
+     * @param skipMove
+     *            A move that has already been searched, or 0.
+     * @param firstMove
+     *            A move to search before all others, or 0.
+     * @param counterMove
+     *            The move that last refuted the previous move, or 0.
+     */
+    public void init(StateExplorer state, int ply, int skipMove, int firstMove, int counterMove)
+    {
+        m_state = state;
+        m_ply = ply;
+        m_skipMove = skipMove;
+        m_firstMove = firstMove;
+        m_counterMove = counterMove;
+        m_stage = STAGE_FIRST;
+    }
+    
+    /**
+     * Checks if the last move returned is a quiet move, which can be searched
+     * with less effort than the others.
+     */
+    public boolean isQuiet()
+    {
+        return m_stage == STAGE_QUIET;
+    }
+    
+    /**
+     * Gets the next move to search.
+     * 
+     * @return The next move, with the source square in bits 0-6 and the
+     *         destination square in bits 7-13. Captures have the number of
+     *         pieces captured in bits 26-25. Returns 0 once all moves have been
+     *         returned.
+     */
+    public int next()
+    {
+        while (true)
+        {
+            switch (m_stage)
+            {
+                case STAGE_FIRST:
+                    m_stage = STAGE_GENERATE;
+                    if (m_firstMove != 0)
+                    {
+                        return m_state.classifyCaptures(m_firstMove);
+                    }
+                    break;
+                
+                case STAGE_GENERATE:
+                    generate();
+                    m_stage = STAGE_CAPTURES;
+                    break;
+                
+                case STAGE_CAPTURES:
+                    if (m_index > 0)
+                    {
+                        return m_captures[--m_index];
+                    }
+                    m_index = 0;
+                    m_stage = STAGE_KILLERS;
+                    break;
+                
+                case STAGE_KILLERS:
+                    while (m_index < m_moveCount)
+                    {
+                        int move = m_moves[m_index++];
+                        if (m_killers.contains(m_ply, move))
+                        {
+                            // remove the move so it isn't returned again
+                            m_moves[m_index - 1] = 0;
+                            return move;
+                        }
+                    }
+                    m_stage = STAGE_CLASSIFY;
+                    break;
+                
+                case STAGE_CLASSIFY:
+                    classify();
+                    m_stage = STAGE_KING;
+                    break;
+                
+                case STAGE_KING:
+                    if (m_index > 0)
+                    {
+                        return m_kingMoves[--m_index];
+                    }
+                    m_stage = STAGE_QUIET;
+                    m_index = m_moveCount;
+                    break;
+                
+                case STAGE_QUIET:
+                    if (m_index > 0)
+                    {
+                        return m_moves[255 - (m_quietMoves[--m_index] & 0xFF)];
+                    }
+                    m_stage = STAGE_DONE;
+                    break;
+                
+                default:
+                    return 0;
+            }
+        }
+    }
+    
+    /**
+     * Generates all legal moves, and separates out the winning moves and
+     * captures.
+     */
+    private void generate()
+    {
+        int moveCount = m_state.getAllLegalMoves(m_moves);
+        int captureCount = 0;
+        int remainingCount = 0;
+        
+        for (int i = 0; i < moveCount; i++)
+        {
+            int move = m_moves[i];
+            
+            // skip the moves that were already returned
+            if (move == m_skipMove || move == m_firstMove)
+            {
+                continue;
+            }
+            
+            int classifiedMove = m_state.classifyCaptures(move);
+            if ((classifiedMove >>> 14) != 0)
+            {
+                m_captures[captureCount++] = classifiedMove;
+            }
+            else
+            {
+                m_moves[remainingCount++] = move;
+            }
+        }
+        
+        // sort so the winning moves and then the most captures are last
+        Arrays.sort(m_captures, 0, captureCount);
+        
+        m_index = captureCount;
+        m_moveCount = remainingCount;
+    }
+    
+    /**
+     * Separates the moves affecting the king's routes to the corners from the
+     * quiet moves, and orders both.
+     */
+    private void classify()
+    {
+        boolean kingCanLeave = m_state.canKingReachCorner();
+        int player = m_state.getTurnPlayer();
+        int kingMoveCount = 0;
+        int quietMoveCount = 0;
+        
+        for (int i = 0; i < m_moveCount; i++)
+        {
+            int move = m_moves[i];
+            
+            // skip the killer moves that were already returned
+            if (move == 0)
+            {
+                continue;
+            }
+            
+            int classifiedMove = m_state.classifyKingMove(move, kingCanLeave);
+            if ((classifiedMove >>> 14) != 0)
+            {
+                m_kingMoves[kingMoveCount++] = classifiedMove;
+            }
+            else
+            {
+                // Order quiet moves with the counter move first, then by history score.
+                // The score is packed above the reversed index of the move, so moves
+                // with equal scores keep the order they were generated in.
+                int score = (move == m_counterMove) ? HistoryTable.MAX_SCORE : m_history.get(player, move);
+                m_quietMoves[quietMoveCount++] = (score << 8) | (255 - i);
+            }
+        }
+        
+        Arrays.sort(m_kingMoves, 0, kingMoveCount);
+        Arrays.sort(m_quietMoves, 0, quietMoveCount);
+        
+        m_index = kingMoveCount;
+        m_moveCount = quietMoveCount;
+    }
+}
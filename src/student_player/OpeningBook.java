@@ -0,0 +1,249 @@
+package student_player;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import tablut.TablutBoardState;
+
+/**
+ * Stores the best moves found by deep searches of the opening positions, so
+ * they can be played without searching during a game.
+ * 
+ * The book is a binary file made by OpeningBookBuilder. It starts with a magic
+ * number and the number of entries, followed by the entries sorted by key. Each
+ * entry is a long key and an int holding a move in bits 0-13 and the move's
+ * weight in bits 16-31. A position may have several entries, and the one with
+ * the greatest weight is played.
+ * 
+ * Positions are keyed by the smallest hash of the board under the 8 board
+ * symmetries along with the player to move, so only one of each set of
+ * symmetric positions needs to be stored. Moves are stored in the orientation
+ * of the symmetry with that smallest hash.
+ * 
+ * The file is memory mapped rather than read in, so loading takes no time and
+ * only the pages touched by lookups are ever read.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class OpeningBook
+{
+    /**
+     * Marks the start of a book file, "TBK1".
+     */
+    private static final int  MAGIC        = 0x54424B31;
+    
+    /**
+     * The size of the file header in bytes, the magic number and entry count.
+     */
+    private static final int  HEADER_BYTES = 8;
+    
+    /**
+     * The size of an entry in bytes, the key followed by the move and weight.
+     */
+    private static final int  ENTRY_BYTES  = 12;
+    
+    /**
+     * The largest weight that can be stored with a move.
+     */
+    public static final int   MAX_WEIGHT   = 0xFFFF;
+    
+    private final ByteBuffer  m_buffer;
+    private final int         m_entryCount;
+    
+    /**
+     * Constructs an opening book.
+     * 
+     * @param buffer
+     *            The contents of the book file.
+     * @param entryCount
+     *            The number of entries in the book.
+     */
+    private OpeningBook(ByteBuffer buffer, int entryCount)
+    {
+        m_buffer = buffer;
+        m_entryCount = entryCount;
+    }
+    
+    /**
+     * Loads an opening book.
+     * 
+     * @param path
+     *            The path of the book file.
+     * @return The book, or null if the file does not exist or is not a book.
+     */
+    public static OpeningBook load(String path)
+    {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r"))
+        {
+            // the mapping stays valid after the file is closed
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            {
+                return null;
+            }
+            int entryCount = buffer.getInt(4);
+            if (entryCount < 0 || buffer.capacity() < HEADER_BYTES + ((long)entryCount * ENTRY_BYTES))
+            {
+                return null;
+            }
+            return new OpeningBook(buffer, entryCount);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Gets the number of entries in the book.
+     */
+    public int size()
+    {
+        return m_entryCount;
+    }
+    
+    /**
+     * Gets the book move for a position.
+     * 
+     * @param boardState
+     *            The position to find a move for.
+     * @return The move with the source square in bits 0-6 and the destination
+     *         square in bits 7-13, or 0 if the position is not in the book.
+     */
+    public int getMove(TablutBoardState boardState)
+    {
+        State state = new State(boardState);
+        state.updatePieceLists();
+        
+        int transform = getCanonicalTransform(state);
+        long key = getKey(state, boardState.getTurnPlayer(), transform);
+        
+        // binary search for the first entry with the key
+        int low = 0;
+        int high = m_entryCount;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (getEntryKey(mid) < key)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        
+        // pick the move with the greatest weight
+        int bestMove = 0;
+        int bestWeight = -1;
+        for (int i = low; i < m_entryCount && getEntryKey(i) == key; i++)
+        {
+            int value = m_buffer.getInt(HEADER_BYTES + (i * ENTRY_BYTES) + 8);
+            int weight = value >>> 16;
+            if (weight > bestWeight)
+            {
+                bestMove = value & 0x3FFF;
+                bestWeight = weight;
+            }
+        }
+        
+        if (bestMove == 0)
+        {
+            return 0;
+        }
+        return StateExplorer.transformMove(StateExplorer.INVERSE_TRANSFORMS[transform], bestMove);
+    }
+    
+    /**
+     * Gets the key of an entry.
+     */
+    private long getEntryKey(int index)
+    {
+        return m_buffer.getLong(HEADER_BYTES + (index * ENTRY_BYTES));
+    }
+    
+    /**
+     * Gets the key a position is stored under.
+     * 
+     * @param state
+     *            The board state, with its piece lists updated.
+     * @param turnPlayer
+     *            The player to move.
+     * @param transform
+     *            The transformation code of the symmetry with the smallest hash.
+     * @return The key.
+     */
+    public static long getKey(State state, int turnPlayer, int transform)
+    {
+        long key = state.getSymmetricHash(transform);
+        return turnPlayer == StateExplorer.WHITE ? key ^ StateExplorer.PLAYER_HASH : key;
+    }
+    
+    /**
+     * Finds the symmetry of a board with the smallest hash.
+     * 
+     * @param state
+     *            The board state, with its piece lists updated.
+     * @return The transformation code of the symmetry.
+     */
+    public static int getCanonicalTransform(State state)
+    {
+        int transform = 0;
+        long minHash = state.getSymmetricHash(0);
+        for (int t = 1; t < 8; t++)
+        {
+            long hash = state.getSymmetricHash(t);
+            if (hash < minHash)
+            {
+                transform = t;
+                minHash = hash;
+            }
+        }
+        return transform;
+    }
+    
+    /**
+     * Writes an opening book file.
+     * 
+     * @param path
+     *            The path of the book file to write.
+     * @param keys
+     *            The key of each entry.
+     * @param values
+     *            The move and weight of each entry, the move in bits 0-13 and the
+     *            weight in bits 16-31.
+     * @param entryCount
+     *            The number of entries to write.
+     * @throws IOException
+     *             If the file could not be written.
+     */
+    public static void write(String path, long[] keys, int[] values, int entryCount) throws IOException
+    {
+        // sort the entries by key
+        Integer[] order = new Integer[entryCount];
+        for (int i = 0; i < entryCount; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i0, i1) -> Long.compare(keys[i0], keys[i1]));
+        
+        try (FileOutputStream out = new FileOutputStream(path))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (entryCount * ENTRY_BYTES));
+            buffer.putInt(MAGIC);
+            buffer.putInt(entryCount);
+            for (int i : order)
+            {
+                buffer.putLong(keys[i]);
+                buffer.putInt(values[i]);
+            }
+            out.write(buffer.array());
+        }
+    }
+}
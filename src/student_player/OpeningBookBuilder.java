@@ -0,0 +1,190 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tablut.TablutBoardState;
+import tablut.TablutMove;
+
+/**
+ * Builds the opening book offline. Every position reachable within a number of
+ * moves from the start position is searched for a fixed time, and the best move
+ * found is stored with the depth reached as its weight. Symmetric positions
+ * share a key, so only one of them is searched.
+ * 
+ * Usage: OpeningBookBuilder [book file] [moves] [seconds per position]
+ * [threads]
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class OpeningBookBuilder
+{
+    /**
+     * The memory allocated to the transposition table in megabytes.
+     */
+    private static final int TRANSPOSITION_TABLE_SIZE = 512;
+    
+    private final TranspositionTable m_transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);
+    private final long               m_searchTime;
+    private final int                m_threadCount;
+    
+    private long[]                   m_keys               = new long[1024];
+    private int[]                    m_values             = new int[1024];
+    private int                      m_entryCount;
+    
+    /**
+     * Creates a new book builder.
+     * 
+     * @param searchTime
+     *            The time in nanoseconds to search each position.
+     * @param threadCount
+     *            The number of positions to search at once.
+     */
+    public OpeningBookBuilder(long searchTime, int threadCount)
+    {
+        m_searchTime = searchTime;
+        m_threadCount = Math.max(threadCount, 1);
+    }
+    
+    /**
+     * Builds and writes an opening book.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String path = args.length > 0 ? args[0] : StudentPlayer.OPENING_BOOK_PATH;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        
+        OpeningBookBuilder builder = new OpeningBookBuilder((long)(seconds * 1000000000), threads);
+        builder.build(moves);
+        OpeningBook.write(path, builder.m_keys, builder.m_values, builder.m_entryCount);
+        
+        System.out.println(String.format("Wrote %d positions to %s", builder.m_entryCount, path));
+    }
+    
+    /**
+     * Searches every position within a number of moves of the start position.
+     * 
+     * @param moves
+     *            The number of moves from the start position to search.
+     */
+    public void build(int moves)
+    {
+        HashSet<Long> seen = new HashSet<Long>();
+        List<TablutBoardState> positions = new ArrayList<TablutBoardState>();
+        positions.add(new TablutBoardState());
+        
+        for (int ply = 0; ply <= moves && !positions.isEmpty(); ply++)
+        {
+            System.out.println(String.format("Searching %d positions %d moves from the start", positions.size(), ply));
+            searchAll(positions);
+            
+            if (ply == moves)
+            {
+                break;
+            }
+            
+            // find the unique positions one move further from the start
+            List<TablutBoardState> nextPositions = new ArrayList<TablutBoardState>();
+            for (TablutBoardState position : positions)
+            {
+                for (TablutMove move : position.getAllLegalMoves())
+                {
+                    TablutBoardState nextPosition = (TablutBoardState)position.clone();
+                    nextPosition.processMove(move);
+                    
+                    if (!nextPosition.gameOver() && seen.add(getKey(nextPosition)))
+                    {
+                        nextPositions.add(nextPosition);
+                    }
+                }
+            }
+            positions = nextPositions;
+        }
+    }
+    
+    /**
+     * Searches a set of positions using all the threads and stores the results.
+     */
+    private void searchAll(List<TablutBoardState> positions)
+    {
+        AtomicInteger nextPosition = new AtomicInteger();
+        Thread[] threads = new Thread[m_threadCount];
+        
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(() ->
+            {
+                Searcher searcher = new Searcher(new Evaluator(StudentPlayer.m_evaluator), m_transpositionTable, 0,
+                        null, null);
+                
+                int index;
+                while ((index = nextPosition.getAndIncrement()) < positions.size())
+                {
+                    TablutBoardState position = positions.get(index);
+                    searcher.setRoot(position, System.nanoTime() + m_searchTime, 0);
+                    
+                    // Positions are searched a move count at a time, so every thread sets
+                    // the same root turn, and entries from the previous move count become
+                    // the first to be replaced.
+                    m_transpositionTable.setRootTurn(searcher.getExplorer().getTurnNumber());
+                    int move = searcher.search();
+                    
+                    if (move != 0)
+                    {
+                        addEntry(position, move, searcher.getCompletedDepth());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        
+        for (Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Stores a book move, converted to the orientation of the position's key.
+     */
+    private synchronized void addEntry(TablutBoardState position, int move, int depth)
+    {
+        State state = new State(position);
+        state.updatePieceLists();
+        int transform = OpeningBook.getCanonicalTransform(state);
+        
+        if (m_entryCount == m_keys.length)
+        {
+            m_keys = Arrays.copyOf(m_keys, m_entryCount * 2);
+            m_values = Arrays.copyOf(m_values, m_entryCount * 2);
+        }
+        
+        int weight = Math.min(depth, OpeningBook.MAX_WEIGHT);
+        m_keys[m_entryCount] = OpeningBook.getKey(state, position.getTurnPlayer(), transform);
+        m_values[m_entryCount] = StateExplorer.transformMove(transform, move & 0x3FFF) | (weight << 16);
+        m_entryCount++;
+    }
+    
+    /**
+     * Gets the key of a position in the book.
+     */
+    private static long getKey(TablutBoardState position)
+    {
+        State state = new State(position);
+        state.updatePieceLists();
+        return OpeningBook.getKey(state, position.getTurnPlayer(), OpeningBook.getCanonicalTransform(state));
+    }
+}
@@ -0,0 +1,124 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import tablut.TablutBoardState;
+import tablut.TablutMove;
+
+/**
+ * Measures how the parallel search scales with the number of threads. A fixed
+ * set of positions is searched to a fixed depth with 1, 2, 4, 8, and 16 threads
+ * in both Lazy SMP and work sharing mode, starting from an empty transposition
+ * table each time. For each run it reports the time to reach the depth, the
+ * speedup over one thread, and the node efficiency, which is how many nodes one
+ * thread needed compared to all the threads together. The speedup can't be more
+ * than the number of cores the machine has.
+ * 
+ * Usage: ParallelBenchmark [depth] [positions] [table size in MB]
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class ParallelBenchmark
+{
+    /**
+     * The thread counts to measure.
+     */
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+    
+    /**
+     * Seeds the random games the positions are taken from, so every run uses the
+     * same positions.
+     */
+    private static final long  POSITION_SEED = 260617022;
+    
+    /**
+     * Runs the benchmark.
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int positionCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int tableSize = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        
+        List<TablutBoardState> positions = getPositions(positionCount);
+        TranspositionTable transpositionTable = new TranspositionTable(tableSize);
+        
+        // let the JIT compile the search before anything is timed
+        ParallelSearch warmup = new ParallelSearch(1, transpositionTable, StudentPlayer.m_evaluator, false);
+        for (TablutBoardState position : positions)
+        {
+            warmup.clearTable();
+            warmup.search(position, Long.MAX_VALUE, depth);
+        }
+        warmup.shutdown();
+        
+        System.out.println(String.format("%d positions to depth %d, %d cores", positionCount, depth,
+                Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format("%-13s %7s %9s %8s %12s %10s", "mode", "threads", "time (s)", "speedup",
+                "nodes", "node eff."));
+        
+        for (boolean workSharing : new boolean[] { false, true })
+        {
+            double baseTime = 0;
+            long baseNodes = 0;
+            
+            for (int threadCount : THREAD_COUNTS)
+            {
+                ParallelSearch search = new ParallelSearch(threadCount, transpositionTable, StudentPlayer.m_evaluator,
+                        workSharing);
+                
+                long time = 0;
+                long nodes = 0;
+                for (TablutBoardState position : positions)
+                {
+                    search.clearTable();
+                    long startTime = System.nanoTime();
+                    search.search(position, Long.MAX_VALUE, depth);
+                    time += System.nanoTime() - startTime;
+                    nodes += search.getNodeCount();
+                }
+                search.shutdown();
+                
+                double seconds = time / 1000000000.0;
+                if (threadCount == 1)
+                {
+                    baseTime = seconds;
+                    baseNodes = nodes;
+                }
+                
+                System.out.println(String.format("%-13s %7d %9.2f %8.2f %12d %10.2f",
+                        workSharing ? "work sharing" : "Lazy SMP", threadCount, seconds, baseTime / seconds, nodes,
+                        (double)baseNodes / nodes));
+            }
+        }
+    }
+    
+    /**
+     * Gets positions from random games, skipping the first few moves so the
+     * positions are not all alike.
+     */
+    private static List<TablutBoardState> getPositions(int count)
+    {
+        Random random = new Random(POSITION_SEED);
+        List<TablutBoardState> positions = new ArrayList<TablutBoardState>();
+        
+        while (positions.size() < count)
+        {
+            TablutBoardState boardState = new TablutBoardState();
+            int moves = 8 + random.nextInt(24);
+            for (int i = 0; i < moves && !boardState.gameOver(); i++)
+            {
+                List<TablutMove> legalMoves = boardState.getAllLegalMoves();
+                boardState.processMove(legalMoves.get(random.nextInt(legalMoves.size())));
+            }
+            
+            if (!boardState.gameOver())
+            {
+                positions.add(boardState);
+            }
+        }
+        return positions;
+    }
+}
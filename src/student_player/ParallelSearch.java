@@ -0,0 +1,226 @@
+package student_player;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import tablut.TablutBoardState;
+
+/**
+ * Runs several searchers on the same root using a fork/join pool. In Lazy SMP
+ * mode the searchers only share the transposition table, and every other helper
+ * starts a ply deeper. In work sharing mode they also share a busy node table
+ * and all search the same iteration, splitting the moves at each node between
+ * them once the first move has been searched, in the manner of ABDADA.
+ * 
+ * The result is always taken from the main searcher, which runs the same
+ * search it would alone, only helped by what the others leave in the tables.
+ * The searches run in the background, so the player can start one, keep
+ * pondering it while the opponent thinks, and collect the result later.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class ParallelSearch
+{
+    private final ForkJoinPool       m_pool;
+    private final Searcher[]         m_searchers;
+    private final TranspositionTable m_transpositionTable;
+    private final SearchControl      m_control = new SearchControl();
+    private ForkJoinTask<?>[]        m_tasks;
+    
+    /**
+     * Creates a parallel search without a time manager or evaluation caches.
+     * 
+     * @param threadCount
+     *            The number of searchers to run at once.
+     * @param transpositionTable
+     *            The transposition table shared by the searchers.
+     * @param evaluator
+     *            The evaluator to copy for each searcher.
+     * @param workSharing
+     *            If the searchers share work through a busy node table rather
+     *            than only the transposition table.
+     */
+    public ParallelSearch(int threadCount, TranspositionTable transpositionTable, Evaluator evaluator,
+            boolean workSharing)
+    {
+        this(threadCount, transpositionTable, evaluator, workSharing, null, 0);
+    }
+    
+    /**
+     * Creates a parallel search.
+     * 
+     * @param threadCount
+     *            The number of searchers to run at once.
+     * @param transpositionTable
+     *            The transposition table shared by the searchers.
+     * @param evaluator
+     *            The evaluator to copy for each searcher.
+     * @param workSharing
+     *            If the searchers share work through a busy node table rather
+     *            than only the transposition table.
+     * @param timeManager
+     *            The time manager that may end the main search early, or null to
+     *            always search until the stop time.
+     * @param evaluationCacheSize
+     *            The memory for each searcher's evaluation cache in megabytes, or 0
+     *            for no cache.
+     */
+    public ParallelSearch(int threadCount, TranspositionTable transpositionTable, Evaluator evaluator,
+            boolean workSharing, TimeManager timeManager, int evaluationCacheSize)
+    {
+        m_pool = new ForkJoinPool(Math.max(threadCount, 1));
+        m_transpositionTable = transpositionTable;
+        
+        BusyNodeTable busyNodes = workSharing ? new BusyNodeTable(BusyNodeTable.DEFAULT_SLOTS) : null;
+        
+        m_searchers = new Searcher[Math.max(threadCount, 1)];
+        m_tasks = new ForkJoinTask<?>[m_searchers.length];
+        for (int i = 0; i < m_searchers.length; i++)
+        {
+            m_searchers[i] = new Searcher(new Evaluator(evaluator), m_transpositionTable, workSharing ? 0 : i % 2,
+                    i == 0 ? timeManager : null,
+                    evaluationCacheSize > 0 ? new EvaluationCache(evaluationCacheSize) : null);
+            m_searchers[i].setBusyNodeTable(busyNodes);
+            m_searchers[i].setSearchControl(m_control);
+        }
+    }
+    
+    /**
+     * Searches a root state until the main searcher reaches a depth or runs out
+     * of time.
+     * 
+     * @param boardState
+     *            The root board state.
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     * @param depthLimit
+     *            The deepest iteration to search, or 0 for no limit.
+     * @return The best move found by the main searcher.
+     */
+    public int search(TablutBoardState boardState, long stopTime, int depthLimit)
+    {
+        for (Searcher searcher : m_searchers)
+        {
+            searcher.setDepthLimit(depthLimit);
+        }
+        start(boardState, stopTime, 0);
+        return finish();
+    }
+    
+    /**
+     * Starts all the searchers on a new root state in the background. Any search
+     * still running must be stopped first.
+     * 
+     * @param boardState
+     *            The root board state.
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     * @param repeatedMove
+     *            A move from the root that may not be played, or 0 if all moves
+     *            are allowed.
+     */
+    public void start(TablutBoardState boardState, long stopTime, int repeatedMove)
+    {
+        for (Searcher searcher : m_searchers)
+        {
+            searcher.setRoot(boardState, stopTime, repeatedMove);
+        }
+        m_transpositionTable.setRootTurn(m_searchers[0].getExplorer().getTurnNumber());
+        
+        for (int i = 0; i < m_tasks.length; i++)
+        {
+            m_tasks[i] = m_pool.submit(m_searchers[i]);
+        }
+    }
+    
+    /**
+     * Changes when the running search must be stopped, such as when the state
+     * being pondered is reached. May be called from any thread.
+     * 
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     */
+    public void ponderHit(long stopTime)
+    {
+        m_control.ponderHit(stopTime);
+    }
+    
+    /**
+     * Waits for the main searcher to finish, then stops the helpers.
+     * 
+     * @return The best move found by the main searcher.
+     */
+    public int finish()
+    {
+        // the helpers are only useful while the main searcher is running
+        if (m_tasks[0] != null)
+        {
+            m_tasks[0].join();
+        }
+        stop();
+        return m_searchers[0].getBestMove();
+    }
+    
+    /**
+     * Stops all searchers and waits for them to finish. Does nothing if there is
+     * no search running.
+     */
+    public void stop()
+    {
+        m_control.stopNow();
+        for (int i = 0; i < m_tasks.length; i++)
+        {
+            if (m_tasks[i] != null)
+            {
+                m_tasks[i].join();
+                m_tasks[i] = null;
+            }
+        }
+    }
+    
+    /**
+     * Gets the main searcher, whose result is used.
+     */
+    public Searcher getMainSearcher()
+    {
+        return m_searchers[0];
+    }
+    
+    /**
+     * Gets all the searchers, starting with the main searcher.
+     */
+    public Searcher[] getSearchers()
+    {
+        return m_searchers;
+    }
+    
+    /**
+     * Gets the number of nodes searched by all the searchers in the last search.
+     */
+    public long getNodeCount()
+    {
+        long nodes = 0;
+        for (Searcher searcher : m_searchers)
+        {
+            nodes += searcher.getNodeCount();
+        }
+        return nodes;
+    }
+    
+    /**
+     * Removes everything learned from previous searches from the transposition
+     * table.
+     */
+    public void clearTable()
+    {
+        m_transpositionTable.clear();
+    }
+    
+    /**
+     * Stops the pool's threads.
+     */
+    public void shutdown()
+    {
+        m_pool.shutdown();
+    }
+}
\ No newline at end of file
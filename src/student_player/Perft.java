@@ -0,0 +1,353 @@
+package student_player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import tablut.TablutBoardState;
+import tablut.TablutMove;
+
+/**
+ * Counts the positions reachable in exactly some number of moves, to check the
+ * move generation and measure how fast it is. The moves from the root are
+ * split between threads, and positions reached by several move orders may be
+ * counted once using a perft table. The count below each root move is printed,
+ * so a wrong total can be narrowed down by running perft again from the
+ * position after the move whose count differs.
+ * 
+ * Positions where the game is over have no moves, so they only count as leaves
+ * when they are reached at the full depth. With the check option every count
+ * is compared to one found with the game's own TablutBoardState move
+ * generation, which is slow, but independent of the bitboards.
+ * 
+ * Usage: Perft [depth] [-threads count] [-hash megabytes] [-check] [moves...]
+ * 
+ * The moves lead from the start position to the position to count from, and
+ * are written like "3,0-3,2" for a move from (3, 0) to (3, 2). A hash size of
+ * 0 turns the perft table off.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class Perft
+{
+    private final ForkJoinPool m_pool;
+    private final PerftTable   m_table;
+    
+    /**
+     * Creates a perft counter.
+     * 
+     * @param threadCount
+     *            The number of root moves to count at once.
+     * @param tableSize
+     *            The memory used by the perft table in megabytes, or 0 to count
+     *            without one.
+     */
+    public Perft(int threadCount, int tableSize)
+    {
+        m_pool = new ForkJoinPool(Math.max(threadCount, 1));
+        m_table = tableSize > 0 ? new PerftTable(tableSize) : null;
+    }
+    
+    /**
+     * Runs perft from the command line.
+     */
+    public static void main(String[] args)
+    {
+        int depth = 4;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int tableSize = 64;
+        boolean check = false;
+        TablutBoardState boardState = new TablutBoardState();
+        
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-threads"))
+            {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-hash"))
+            {
+                tableSize = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-check"))
+            {
+                check = true;
+            }
+            else if (i == 0)
+            {
+                depth = Integer.parseInt(args[i]);
+            }
+            else
+            {
+                boardState.processMove(parseMove(args[i], boardState.getTurnPlayer()));
+            }
+        }
+        
+        Perft perft = new Perft(threads, tableSize);
+        int[] moves = new int[StateExplorer.MAX_LEGAL_MOVES];
+        int moveCount = getRootMoves(boardState, moves);
+        depth = Math.max(depth, 1);
+        
+        long startTime = System.nanoTime();
+        long[] counts = perft.divide(boardState, moves, moveCount, depth);
+        double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+        perft.shutdown();
+        
+        long[] checkCounts = check ? checkDivide(boardState, moves, moveCount, depth) : null;
+        
+        long total = 0;
+        int mismatches = 0;
+        for (int i = 0; i < moveCount; i++)
+        {
+            String line = String.format("%s: %d", formatMove(moves[i]), counts[i]);
+            if (checkCounts != null && checkCounts[i] != counts[i])
+            {
+                line += String.format(" (expected %d)", checkCounts[i]);
+                mismatches++;
+            }
+            System.out.println(line);
+            total += counts[i];
+        }
+        
+        System.out.println();
+        System.out.println(String.format("Depth %d: %d moves, %d leaves in %.3f s, %d leaves/s", depth, moveCount,
+                total, seconds, (long)(total / Math.max(seconds, 1e-9))));
+        if (check)
+        {
+            System.out.println(mismatches == 0 ? "Check passed"
+                    : String.format("Check failed for %d of %d moves", mismatches, moveCount));
+        }
+    }
+    
+    /**
+     * Counts the leaves below each move from a position, counting the moves at
+     * once on the threads.
+     * 
+     * @param boardState
+     *            The position to count from.
+     * @param moves
+     *            The legal moves from the position.
+     * @param moveCount
+     *            The number of legal moves.
+     * @param depth
+     *            The number of moves to the leaves, at least 1.
+     * @return The number of leaves below each move.
+     */
+    public long[] divide(TablutBoardState boardState, int[] moves, int moveCount, int depth)
+    {
+        if (m_table != null)
+        {
+            m_table.clear();
+        }
+        
+        List<Future<Long>> tasks = new ArrayList<Future<Long>>();
+        for (int i = 0; i < moveCount; i++)
+        {
+            int move = moves[i];
+            tasks.add(m_pool.submit(() ->
+            {
+                StateExplorer explorer = new StateExplorer(new Evaluator(StudentPlayer.m_evaluator), boardState);
+                explorer.makeMove(move);
+                return count(explorer, new int[depth][StateExplorer.MAX_LEGAL_MOVES], depth - 1);
+            }));
+        }
+        
+        long[] counts = new long[moveCount];
+        for (int i = 0; i < moveCount; i++)
+        {
+            try
+            {
+                counts[i] = tasks.get(i).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return counts;
+            }
+            catch (ExecutionException e)
+            {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Counts the leaves from a position.
+     * 
+     * @return The total number of leaves.
+     */
+    public long count(TablutBoardState boardState, int depth)
+    {
+        if (depth == 0)
+        {
+            return 1;
+        }
+        
+        int[] moves = new int[StateExplorer.MAX_LEGAL_MOVES];
+        long total = 0;
+        for (long count : divide(boardState, moves, getRootMoves(boardState, moves), depth))
+        {
+            total += count;
+        }
+        return total;
+    }
+    
+    /**
+     * Stops the threads.
+     */
+    public void shutdown()
+    {
+        m_pool.shutdown();
+    }
+    
+    /**
+     * Counts the leaves below the current state of an explorer.
+     * 
+     * @param explorer
+     *            The explorer at the position to count.
+     * @param moves
+     *            The move buffers, one for each depth.
+     * @param depth
+     *            The number of moves to the leaves.
+     * @return The number of leaves.
+     */
+    private long count(StateExplorer explorer, int[][] moves, int depth)
+    {
+        if (depth == 0)
+        {
+            return 1;
+        }
+        if (explorer.isTerminal())
+        {
+            return 0;
+        }
+        
+        int[] depthMoves = moves[depth];
+        int moveCount = explorer.getAllLegalMoves(depthMoves);
+        
+        // every move at the last depth leads to a leaf, so they don't need making
+        if (depth == 1)
+        {
+            return moveCount;
+        }
+        
+        long hash = explorer.getHash();
+        if (m_table != null)
+        {
+            long count = m_table.get(hash, depth);
+            if (count >= 0)
+            {
+                return count;
+            }
+        }
+        
+        long count = 0;
+        for (int i = 0; i < moveCount; i++)
+        {
+            explorer.makeMove(depthMoves[i]);
+            count += count(explorer, moves, depth - 1);
+            explorer.unmakeMove();
+        }
+        
+        if (m_table != null)
+        {
+            m_table.put(hash, depth, count);
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the legal moves from the position perft starts from.
+     * 
+     * @return The number of moves, which is 0 if the game is over.
+     */
+    private static int getRootMoves(TablutBoardState boardState, int[] moves)
+    {
+        // an explorer only learns the game is over from the moves it makes
+        if (boardState.gameOver())
+        {
+            return 0;
+        }
+        return new StateExplorer(new Evaluator(StudentPlayer.m_evaluator), boardState).getAllLegalMoves(moves);
+    }
+    
+    /**
+     * Counts the leaves below each move from a position using TablutBoardState.
+     */
+    private static long[] checkDivide(TablutBoardState boardState, int[] moves, int moveCount, int depth)
+    {
+        long[] counts = new long[moveCount];
+        for (int i = 0; i < moveCount; i++)
+        {
+            TablutBoardState child = (TablutBoardState)boardState.clone();
+            child.processMove(toTablutMove(moves[i], boardState.getTurnPlayer()));
+            counts[i] = checkCount(child, depth - 1);
+        }
+        return counts;
+    }
+    
+    /**
+     * Counts the leaves below a position using TablutBoardState.
+     */
+    private static long checkCount(TablutBoardState boardState, int depth)
+    {
+        if (depth == 0)
+        {
+            return 1;
+        }
+        if (boardState.gameOver())
+        {
+            return 0;
+        }
+        
+        List<TablutMove> legalMoves = boardState.getAllLegalMoves();
+        if (depth == 1)
+        {
+            return legalMoves.size();
+        }
+        
+        long count = 0;
+        for (TablutMove move : legalMoves)
+        {
+            TablutBoardState child = (TablutBoardState)boardState.clone();
+            child.processMove(move);
+            count += checkCount(child, depth - 1);
+        }
+        return count;
+    }
+    
+    /**
+     * Reads a move written like "3,0-3,2".
+     */
+    private static TablutMove parseMove(String move, int player)
+    {
+        String[] squares = move.split("-");
+        String[] from = squares[0].split(",");
+        String[] to = squares[1].split(",");
+        return new TablutMove(Integer.parseInt(from[0]), Integer.parseInt(from[1]), Integer.parseInt(to[0]),
+                Integer.parseInt(to[1]), player);
+    }
+    
+    /**
+     * Writes a packed move like "3,0-3,2".
+     */
+    private static String formatMove(int move)
+    {
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
+        return String.format("%d,%d-%d,%d", from % 9, from / 9, to % 9, to / 9);
+    }
+    
+    /**
+     * Converts a packed move integer to a move for TablutBoardState.
+     */
+    private static TablutMove toTablutMove(int move, int player)
+    {
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
+        return new TablutMove(from % 9, from / 9, to % 9, to / 9, player);
+    }
+}
@@ -0,0 +1,100 @@
+package student_player;
+
+import java.util.Arrays;
+
+/**
+ * Caches the leaf counts of positions searched by perft, so a position reached
+ * by several move orders is only counted once. Positions are stored by hash
+ * and the depth left below them. Within one perft every position at the same
+ * depth is the same number of moves from the root, so the turn number, which
+ * decides when the game is drawn, never needs to be part of the key.
+ * 
+ * The table is shared by the perft threads without locking. Each entry is two
+ * longs, the count and the key XORed with the count, so an entry torn by two
+ * threads writing at once just fails to match and is counted again.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class PerftTable
+{
+    /**
+     * The bytes used by each entry.
+     */
+    private static final int    ENTRY_BYTES = 16;
+    
+    /**
+     * Spreads the entries for the same position at different depths.
+     */
+    private static final long   DEPTH_MIX   = 0x9E3779B97F4A7C15L;
+    
+    private final long[]        m_entries;
+    private final int           m_indexMask;
+    
+    /**
+     * Constructs a perft table.
+     * 
+     * @param size
+     *            The memory to use in megabytes, rounded down to a power of two.
+     */
+    public PerftTable(int size)
+    {
+        int entryCount = Integer.highestOneBit(Math.max(size, 1) * (1024 * 1024 / ENTRY_BYTES));
+        m_entries = new long[entryCount * 2];
+        m_indexMask = entryCount - 1;
+    }
+    
+    /**
+     * Removes all entries from the table.
+     */
+    public void clear()
+    {
+        Arrays.fill(m_entries, 0);
+    }
+    
+    /**
+     * Gets the leaf count of a position.
+     * 
+     * @param hash
+     *            The hash of the position.
+     * @param depth
+     *            The depth left below the position, at least 1.
+     * @return The number of leaves, or -1 if the position is not in the table.
+     */
+    public long get(long hash, int depth)
+    {
+        int index = getIndex(hash, depth);
+        long data = m_entries[index + 1];
+        if ((m_entries[index] ^ data) != hash || (data & 0xFF) != depth)
+        {
+            return -1;
+        }
+        return data >>> 8;
+    }
+    
+    /**
+     * Stores the leaf count of a position, replacing whatever was in its slot.
+     * 
+     * @param hash
+     *            The hash of the position.
+     * @param depth
+     *            The depth left below the position, at least 1.
+     * @param count
+     *            The number of leaves.
+     */
+    public void put(long hash, int depth, long count)
+    {
+        int index = getIndex(hash, depth);
+        long data = (count << 8) | depth;
+        m_entries[index] = hash ^ data;
+        m_entries[index + 1] = data;
+    }
+    
+    /**
+     * Gets the array index of the slot for a position.
+     */
+    private int getIndex(long hash, int depth)
+    {
+        long mixed = hash ^ (depth * DEPTH_MIX);
+        return ((int)(mixed ^ (mixed >>> 32)) & m_indexMask) * 2;
+    }
+}
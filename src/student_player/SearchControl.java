@@ -0,0 +1,82 @@
+package student_player;
+
+/**
+ * Decides when a search must stop, and lets other threads stop it. The
+ * searchers sharing a control all stop together, whether the time runs out
+ * for one of them or a caller stops them.
+ * 
+ * Reading the clock is slow compared to searching a node, so the searchers
+ * don't check the time before every move. They check the stop flag, which is
+ * a plain volatile read, and only compare the clock to the deadline once every
+ * TIME_CHECK_NODES nodes. A searcher that finds the deadline has passed raises
+ * the flag for all of them.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class SearchControl
+{
+    /**
+     * How many nodes a searcher visits between checks of the time. A searcher
+     * visits well over a million nodes a second, so the search overruns the
+     * deadline by around a millisecond at most.
+     */
+    public static final int  TIME_CHECK_NODES = 1024;
+    
+    private volatile boolean m_stopped;
+    private volatile long    m_stopTime;
+    
+    /**
+     * Prepares for a new search.
+     * 
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     */
+    public void start(long stopTime)
+    {
+        m_stopTime = stopTime;
+        m_stopped = false;
+    }
+    
+    /**
+     * Stops the search as soon as possible. May be called from any thread.
+     */
+    public void stopNow()
+    {
+        m_stopped = true;
+    }
+    
+    /**
+     * Gives a search that was started without a time limit, such as pondering
+     * the opponent's expected move, a deadline now that the move is known. May
+     * be called from any thread.
+     * 
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     */
+    public void ponderHit(long stopTime)
+    {
+        m_stopTime = stopTime;
+    }
+    
+    /**
+     * Checks if the search must stop, without reading the clock.
+     */
+    public boolean isStopped()
+    {
+        return m_stopped;
+    }
+    
+    /**
+     * Stops the search if the deadline has passed.
+     * 
+     * @return True if the search must stop.
+     */
+    public boolean checkTime()
+    {
+        if (!m_stopped && System.nanoTime() > m_stopTime)
+        {
+            m_stopped = true;
+        }
+        return m_stopped;
+    }
+}
@@ -0,0 +1,124 @@
+package student_player;
+
+/**
+ * Counts what a searcher does during a search, for tuning and for watching the
+ * search in games. Every searcher has its own counters, so counting needs no
+ * synchronization. The counters are only updated when telemetry or the printed
+ * statistics are enabled, and since the flag is a constant the JIT removes the
+ * counting code entirely when they are not.
+ * 
+ * The counts are totals for the whole search so far, except the iteration node
+ * counts, which the effective branching factor is found from. The node count is
+ * copied from the searcher at the end of each iteration rather than counted
+ * here, since the searcher needs it for its time checks either way.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class SearchStats
+{
+    /**
+     * Indicates if the searchers count their work. Enabled by giving a sink with
+     * the "student_player.telemetry" system property, or by printing statistics
+     * with the "student_player.stats" system property.
+     */
+    public static final boolean ENABLED = System.getProperty("student_player.telemetry") != null
+            || Boolean.getBoolean("student_player.stats");
+    
+    /**
+     * The nodes visited by the main search and by the quiescence search.
+     */
+    public long                 nodes;
+    
+    /**
+     * The nodes visited by the quiescence search.
+     */
+    public long                 quiescenceNodes;
+    
+    /**
+     * The transposition table probes, the probes that found an entry, and the
+     * entries that ended the search of a node without searching any moves.
+     */
+    public long                 tableProbes;
+    public long                 tableHits;
+    public long                 tableCutoffs;
+    
+    /**
+     * The beta cut-offs in the main search, the ones caused by the first move
+     * searched, and the ones caused by a killer move.
+     */
+    public long                 cutoffs;
+    public long                 firstMoveCutoffs;
+    public long                 killerCutoffs;
+    
+    /**
+     * The null window searches that failed high and were searched again with the
+     * full window, and the iterations searched again after falling outside the
+     * aspiration window.
+     */
+    public long                 researches;
+    public long                 aspirationResearches;
+    
+    /**
+     * The nodes visited by the last completed iteration and by the one before.
+     */
+    public long                 iterationNodes;
+    public long                 previousIterationNodes;
+    
+    /**
+     * Clears the counters for a new search.
+     */
+    public void reset()
+    {
+        nodes = 0;
+        quiescenceNodes = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        tableCutoffs = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        killerCutoffs = 0;
+        researches = 0;
+        aspirationResearches = 0;
+        iterationNodes = 0;
+        previousIterationNodes = 0;
+    }
+    
+    /**
+     * Records the end of an iteration.
+     * 
+     * @param totalNodes
+     *            The nodes visited by the search so far.
+     */
+    public void iterationDone(long totalNodes)
+    {
+        previousIterationNodes = iterationNodes;
+        iterationNodes = totalNodes - nodes;
+        nodes = totalNodes;
+    }
+    
+    /**
+     * Gets the fraction of transposition table probes that found an entry.
+     */
+    public double getTableHitRate()
+    {
+        return tableProbes == 0 ? 0.0 : (double)tableHits / tableProbes;
+    }
+    
+    /**
+     * Gets the fraction of cut-offs caused by the first move searched, which
+     * shows how well the moves are ordered.
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return cutoffs == 0 ? 0.0 : (double)firstMoveCutoffs / cutoffs;
+    }
+    
+    /**
+     * Gets how many times more nodes the last iteration took than the one
+     * before, or 0 if there was no iteration before.
+     */
+    public double getBranchingFactor()
+    {
+        return previousIterationNodes == 0 ? 0.0 : (double)iterationNodes / previousIterationNodes;
+    }
+}
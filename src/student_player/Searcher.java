@@ -0,0 +1,1133 @@
+package student_player;
+
+import java.util.Arrays;
+
+import tablut.TablutBoardState;
+
+/**
+ * Searches the game tree from a root state using an iterative deepening
+ * principle variation search.
+ * 
+ * Every searcher owns the state explorer, evaluator, killer table, and move
+ * buffers it uses while exploring, so several searchers may explore the same
+ * root at once on different threads. The only thing shared between them is the
+ * transposition table, which is how the searchers help each other out. This is
+ * the "Lazy SMP" approach to parallel search: the helpers never communicate
+ * directly, but the entries they leave in the table let the main searcher skip
+ * work and order moves better.
+ * 
+ * Searchers may also share a busy node table, which lets them split the work
+ * more deliberately by putting off moves another searcher is already busy with.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class Searcher implements Runnable
+{
+    /**
+     * The maximum number of plys a search can reach.
+     */
+    private static final int         MAX_PLY            = 101;
+    
+    /**
+     * The half widths of the aspiration windows tried around the previous
+     * iteration's score, from narrowest to widest. Each time the search falls
+     * outside the window it is widened to the next size, and once these are
+     * exhausted the full window is used. May be set as a comma separated list
+     * with the "student_player.aspiration" system property, where an empty list
+     * searches every iteration with the full window.
+     */
+    private static final int[]       ASPIRATION_WINDOWS = parseList(
+            System.getProperty("student_player.aspiration", "50,200,800"));
+    
+    /**
+     * Indicates if null move pruning is used. Passing is often better than moving
+     * in Tablut, so null moves give many false cut-offs and on the positions tried
+     * so far they cost more nodes than they save. Enabled with the
+     * "student_player.nullmove" system property.
+     */
+    private static final boolean     NULL_MOVE          = Boolean.getBoolean("student_player.nullmove");
+    
+    /**
+     * Indicates if quiescence search probes and stores the transposition table.
+     * With correct scores the extra stores cost more nodes than the probes save
+     * on the positions tried so far. Enabled with the "student_player.qtable"
+     * system property.
+     */
+    private static final boolean     QUIESCENCE_TABLE   = Boolean.getBoolean("student_player.qtable");
+    
+    /**
+     * The smallest depth at which a null move is tried.
+     */
+    private static final int         NULL_MOVE_DEPTH    = 5;
+    
+    /**
+     * How far the static evaluation must be above beta before a null move is
+     * tried.
+     */
+    private static final int         NULL_MOVE_MARGIN   = 300;
+    
+    /**
+     * The depth from which the null move search is reduced by an extra ply.
+     */
+    private static final int         NULL_MOVE_DEEP     = 7;
+    
+    /**
+     * The smallest depth at which nodes are marked as busy for work sharing.
+     * Shallower nodes are searched too quickly for sharing them to pay off.
+     */
+    private static final int         BUSY_DEPTH         = 3;
+    
+    /**
+     * Marks a put off move that was a quiet move when it was picked.
+     */
+    private static final int         DEFERRED_QUIET     = 1 << 31;
+    
+    private final Evaluator          m_evaluator;
+    private final TranspositionTable m_transpositionTable;
+    private final int                m_depthOffset;
+    private final TimeManager        m_timeManager;
+    private final EvaluationCache    m_evaluationCache;
+    private BusyNodeTable            m_busyNodes;
+    private TelemetrySink            m_telemetrySink;
+    private final KillerTable        m_killers       = new KillerTable(MAX_PLY - 1);
+    private final HistoryTable       m_history       = new HistoryTable();
+    private final CounterMoveTable   m_counterMoves  = new CounterMoveTable();
+    private final int[][]            m_legalMoves    = new int[MAX_PLY][StateExplorer.MAX_LEGAL_MOVES];
+    private final int[][]            m_criticalMoves = new int[MAX_PLY][StateExplorer.MAX_LEGAL_MOVES];
+    private final int[][]            m_deferredMoves = new int[MAX_PLY][StateExplorer.MAX_LEGAL_MOVES];
+    private final MovePicker[]       m_movePickers   = new MovePicker[MAX_PLY];
+    private final int[]              m_researches    = new int[MAX_PLY];
+    private final int[]              m_pv            = new int[MAX_PLY];
+    private final SearchStats        m_stats         = new SearchStats();
+    
+    private StateExplorer            m_explorer;
+    private SearchControl            m_control       = new SearchControl();
+    private int                      m_repeatedMove;
+    private int                      m_depthLimit;
+    private int                      m_noNullMovePly;
+    private int                      m_bestMove;
+    private int                      m_completedDepth;
+    private long                     m_nodes;
+    
+    /**
+     * Creates a new searcher.
+     * 
+     * @param evaluator
+     *            The evaluator used to score game states. Must not be shared with
+     *            searchers running on other threads.
+     * @param transpositionTable
+     *            The transposition table to use.
+     * @param depthOffset
+     *            How many plys deeper to start the iterative deepening at. Helper
+     *            searchers use different offsets so they are less likely to
+     *            search the same nodes at the same time as the others.
+     * @param timeManager
+     *            Decides when to stop starting new iterations, or null to iterate
+     *            until the stop time.
+     * @param evaluationCache
+     *            The cache of evaluated states, or null to not cache evaluations.
+     *            Must not be shared with searchers running on other threads.
+     */
+    public Searcher(Evaluator evaluator, TranspositionTable transpositionTable, int depthOffset,
+            TimeManager timeManager, EvaluationCache evaluationCache)
+    {
+        m_evaluator = evaluator;
+        m_transpositionTable = transpositionTable;
+        m_depthOffset = depthOffset;
+        m_timeManager = timeManager;
+        m_evaluationCache = evaluationCache;
+        
+        for (int i = 0; i < m_movePickers.length; i++)
+        {
+            m_movePickers[i] = new MovePicker(m_killers, m_history);
+        }
+    }
+    
+    /**
+     * Prepares the searcher to explore a new root state.
+     * 
+     * @param boardState
+     *            The root board state.
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     * @param repeatedMove
+     *            A move at the root that is not allowed since it would repeat
+     *            the board too many times, or 0 if all moves are allowed.
+     */
+    public void setRoot(TablutBoardState boardState, long stopTime, int repeatedMove)
+    {
+        m_explorer = new StateExplorer(m_evaluator, boardState);
+        m_explorer.setEvaluationCache(m_evaluationCache);
+        m_control.start(stopTime);
+        m_repeatedMove = repeatedMove;
+    }
+    
+    /**
+     * Changes when the search must be stopped. May be called from any thread while
+     * the search is running.
+     * 
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     */
+    public void setStopTime(long stopTime)
+    {
+        m_control.ponderHit(stopTime);
+    }
+    
+    /**
+     * Shares the decision to stop with other searchers. Each searcher has its own
+     * control until this is called.
+     * 
+     * @param control
+     *            The control shared by the searchers on the root.
+     */
+    public void setSearchControl(SearchControl control)
+    {
+        m_control = control;
+    }
+    
+    /**
+     * Shares work with the other searchers using the same busy node table, in the
+     * manner of ABDADA. Moves into nodes another searcher is busy with are put off
+     * until the rest of the moves are searched, except the first move at each
+     * node, which is always searched right away as in Young Brothers Wait.
+     * 
+     * @param busyNodes
+     *            The table shared by all searchers on the root, or null to not
+     *            share work.
+     */
+    public void setBusyNodeTable(BusyNodeTable busyNodes)
+    {
+        m_busyNodes = busyNodes;
+    }
+    
+    /**
+     * Reports every completed iteration to a sink. The counters in the reports
+     * are only kept if SearchStats.ENABLED is set.
+     * 
+     * @param telemetrySink
+     *            The sink to report to, or null to not report.
+     */
+    public void setTelemetrySink(TelemetrySink telemetrySink)
+    {
+        m_telemetrySink = telemetrySink;
+    }
+    
+    /**
+     * Limits the depth of the iterative deepening.
+     * 
+     * @param depthLimit
+     *            The deepest iteration to search, or 0 for no limit.
+     */
+    public void setDepthLimit(int depthLimit)
+    {
+        m_depthLimit = depthLimit;
+    }
+    
+    /**
+     * Gets the state explorer for the current root.
+     */
+    public StateExplorer getExplorer()
+    {
+        return m_explorer;
+    }
+    
+    /**
+     * Gets the best move found by the last completed iteration.
+     */
+    public int getBestMove()
+    {
+        return m_bestMove;
+    }
+    
+    /**
+     * Gets the depth of the last completed iteration.
+     */
+    public int getCompletedDepth()
+    {
+        return m_completedDepth;
+    }
+    
+    /**
+     * Gets the number of nodes visited in the current search.
+     */
+    public long getNodeCount()
+    {
+        return m_nodes;
+    }
+    
+    /**
+     * Gets the counters of the current search, which are only kept if
+     * SearchStats.ENABLED is set.
+     */
+    public SearchStats getStats()
+    {
+        return m_stats;
+    }
+    
+    /**
+     * Gets the evaluation cache used by this searcher, or null if there is none.
+     */
+    public EvaluationCache getEvaluationCache()
+    {
+        return m_evaluationCache;
+    }
+    
+    /**
+     * Gets the number of times each iteration of the current search had to be
+     * searched again after falling outside the aspiration window.
+     * 
+     * @return The re-search counts, indexed by iteration depth.
+     */
+    public int[] getResearches()
+    {
+        return Arrays.copyOf(m_researches, m_completedDepth + 1);
+    }
+    
+    /**
+     * Signals the search to finish as soon as possible. May be called from any
+     * thread.
+     */
+    public void stop()
+    {
+        m_control.stopNow();
+    }
+    
+    @Override
+    public void run()
+    {
+        search();
+    }
+    
+    /**
+     * Does an iterative depth search to find a good move from the root state.
+     * Iterates until all nodes are explored or time is up.
+     * 
+     * @return The best move found.
+     */
+    public int search()
+    {
+        // Clear the killer move table, and keep only some of what the history table
+        // learned from the last search. The counter moves are kept, since each one
+        // is replaced as soon as a different reply causes a cut-off.
+        m_killers.Clear();
+        m_history.age();
+        
+        long startTime = System.nanoTime();
+        m_bestMove = 0;
+        m_completedDepth = 0;
+        m_nodes = 0;
+        if (m_evaluationCache != null)
+        {
+            m_evaluationCache.resetStats();
+        }
+        m_noNullMovePly = -1;
+        Arrays.fill(m_researches, 0);
+        if (SearchStats.ENABLED)
+        {
+            m_stats.reset();
+        }
+        
+        int maxDepth = m_explorer.getRemainingMoves();
+        if (m_depthLimit > 0)
+        {
+            maxDepth = Math.min(maxDepth, m_depthLimit);
+        }
+        int rootMoves = m_explorer.getAllLegalMoves(m_legalMoves[0]);
+        if (m_repeatedMove != 0)
+        {
+            rootMoves--;
+        }
+        
+        if (m_timeManager != null)
+        {
+            m_timeManager.newSearch();
+        }
+        
+        int score = 0;
+        
+        for (int depth = 1 + m_depthOffset; depth <= maxDepth; depth++)
+        {
+            // Search a narrow window around the last score, since it usually won't
+            // change much between iterations. Win scores are too far apart for that.
+            int window = (m_completedDepth > 0 && Math.abs(score) < Evaluator.WIN_VALUE) ? 0
+                    : ASPIRATION_WINDOWS.length;
+            int result;
+            
+            while (true)
+            {
+                int a = -Short.MAX_VALUE;
+                int b = Short.MAX_VALUE;
+                if (window < ASPIRATION_WINDOWS.length)
+                {
+                    a = Math.max(score - ASPIRATION_WINDOWS[window], -Short.MAX_VALUE);
+                    b = Math.min(score + ASPIRATION_WINDOWS[window], Short.MAX_VALUE);
+                }
+                
+                result = pvs(m_explorer, 0, depth, a, b, true);
+                
+                // if the score fell outside the window the true score is not known, so
+                // widen the window and try again
+                int resultScore = result >> 16;
+                boolean inWindow = resultScore > a && resultScore < b;
+                if (inWindow || (result & 0xFFFF) == 0 || window == ASPIRATION_WINDOWS.length)
+                {
+                    break;
+                }
+                window++;
+                m_researches[depth]++;
+                if (SearchStats.ENABLED)
+                {
+                    m_stats.aspirationResearches++;
+                }
+            }
+            
+            // unpack the best move and use it if this iteration was completed
+            int move = result & 0xFFFF;
+            score = result >> 16;
+            if (move > 0)
+            {
+                m_bestMove = move;
+                m_completedDepth = depth;
+            }
+            else
+            {
+                break;
+            }
+            
+            if (m_telemetrySink != null)
+            {
+                reportIteration(depth, score, System.nanoTime() - startTime);
+            }
+            
+            // check if there is time for another iteration
+            if (m_timeManager != null && !m_timeManager.iterationDone(move, score, rootMoves))
+            {
+                break;
+            }
+        }
+        return m_bestMove;
+    }
+    
+    /**
+     * Sends the results of a completed iteration to the telemetry sink.
+     */
+    private void reportIteration(int depth, int score, long elapsed)
+    {
+        m_stats.iterationDone(m_nodes);
+        
+        m_telemetrySink.iterationDone(m_explorer.getTurnNumber(), depth, score, m_pv,
+                getPrincipalVariation(m_bestMove, depth), elapsed, m_stats);
+    }
+    
+    /**
+     * Finds the principal variation of the last iteration by following the moves
+     * stored in the transposition table from the root. The line may be cut short
+     * if entries were overwritten.
+     * 
+     * @param bestMove
+     *            The best move at the root.
+     * @param depth
+     *            The depth of the iteration, which is the longest the line can be.
+     * @return The number of moves stored in m_pv.
+     */
+    private int getPrincipalVariation(int bestMove, int depth)
+    {
+        StateExplorer state = m_explorer;
+        int length = 0;
+        int move = bestMove;
+        
+        while (move != 0 && length < depth && !state.isTerminal() && state.isLegalMove(move))
+        {
+            m_pv[length++] = move;
+            state.makeMove(move);
+            
+            long entry = m_transpositionTable.get(state.getHash(), 0, state.getTurnNumber());
+            move = entry != TranspositionTable.NO_VALUE
+                    ? state.fromTableMove(TranspositionTable.ExtractMove(entry)) : 0;
+        }
+        
+        for (int i = 0; i < length; i++)
+        {
+            state.unmakeMove();
+        }
+        return length;
+    }
+    
+    /**
+     * Checks if the search must stop. Once this is true every node returns right
+     * away without using the results of its children, so an aborted search
+     * unwinds without storing anything in the tables.
+     */
+    private boolean isStopping()
+    {
+        return m_control.isStopped();
+    }
+    
+    /**
+     * Counts a visited node, and checks the time once every few nodes.
+     */
+    private void countNode()
+    {
+        if ((++m_nodes & (SearchControl.TIME_CHECK_NODES - 1)) == 0)
+        {
+            m_control.checkTime();
+        }
+    }
+    
+    /**
+     * Does a principle variation search from a given node.
+     * 
+     * @param state
+     *            The current search node.
+     * @param ply
+     *            The ply of the node.
+     * @param depth
+     *            The depth left until the cutoff.
+     * @param a
+     *            The alpha value.
+     * @param b
+     *            The beta value.
+     * @param isPVNode
+     *            Indicates if this node is a principle variation node.
+     * @return The value of this node in the most significant 16 bits and the best
+     *         move in the least signinicant 16 bits.
+     */
+    private int pvs(StateExplorer state, int ply, int depth, int a, int b, boolean isPVNode)
+    {
+        // if a leaf state evaluate and return the value
+        if (depth <= 0 || state.isTerminal())
+        {
+            return quiescence(state, ply, 10, a, b);
+        }
+        
+        countNode();
+        
+        int aOrig = a;
+        int bOrig = b;
+        
+        // check if we have visited this state before and know some information about it
+        long hash = state.getHash();
+        long entry = m_transpositionTable.get(hash, depth, state.getTurnNumber());
+        int tableMove = 0;
+        if (SearchStats.ENABLED)
+        {
+            m_stats.tableProbes++;
+        }
+        
+        // if the entry is valid use the stored information
+        if (entry != TranspositionTable.NO_VALUE)
+        {
+            if (SearchStats.ENABLED)
+            {
+                m_stats.tableHits++;
+            }
+            
+            int score = TranspositionTable.ExtractScore(entry);
+            int entryDepth = TranspositionTable.ExtractDepth(entry);
+            tableMove = state.fromTableMove(TranspositionTable.ExtractMove(entry));
+            
+            // The table is shared with other searchers and indexed by hash, so the entry
+            // might not belong to this state. Only trust the entry if its move could
+            // have been played here.
+            if (tableMove != 0 && !state.isLegalMove(tableMove))
+            {
+                tableMove = 0;
+            }
+            // this entry stores more complete search information to a greater or equal
+            // depth, so we can just use the stored values
+            else if (entryDepth >= depth)
+            {
+                if (isRepetition(tableMove, ply))
+                {
+                    score = 0;
+                }
+                
+                // the score represents a different value based on the node type
+                switch (TranspositionTable.ExtractNodeType(entry))
+                {
+                    case TranspositionTable.PV_NODE:
+                        if (SearchStats.ENABLED)
+                        {
+                            m_stats.tableCutoffs++;
+                        }
+                        return packMoveScore(tableMove, score);
+                    case TranspositionTable.CUT_NODE:
+                        a = Math.max(a, score);
+                        break;
+                    case TranspositionTable.ALL_NODE:
+                        b = Math.min(b, score);
+                        break;
+                }
+                // alpha-beta prune
+                if (a >= b)
+                {
+                    if (SearchStats.ENABLED)
+                    {
+                        m_stats.tableCutoffs++;
+                    }
+                    return packMoveScore(tableMove, score);
+                }
+            }
+        }
+        
+        // Null move pruning. If we pass the turn and the opponent still can't bring the
+        // score under beta with a reduced search, this node is almost certainly going
+        // to be cut off, so don't bother searching it fully. Don't pass twice in a row,
+        // don't try it when beta is a win since the result can't be trusted, and don't
+        // try it if the table already told us the score is under beta.
+        if (NULL_MOVE && !isPVNode && ply > 0 && depth >= NULL_MOVE_DEPTH && ply != m_noNullMovePly
+                && state.getState().move != 0 && b == bOrig && Math.abs(b) < Evaluator.WIN_VALUE
+                && state.evaluate() >= b + NULL_MOVE_MARGIN)
+        {
+            int reduction = depth >= NULL_MOVE_DEEP ? 3 : 2;
+            
+            state.makeNullMove();
+            int score = -pvs(state, ply + 1, depth - 1 - reduction, -b, -b + 1, false) >> 16;
+            state.unmakeNullMove();
+            
+            // Passing is not really allowed, so there are positions where being forced to
+            // move is harmful. When the king is near an exit this could decide the game,
+            // so verify with a reduced search of the real moves.
+            if (score >= b && state.isKingNearEscape())
+            {
+                int lastNoNullMovePly = m_noNullMovePly;
+                m_noNullMovePly = ply;
+                score = pvs(state, ply, depth - reduction, b - 1, b, false) >> 16;
+                m_noNullMovePly = lastNoNullMovePly;
+            }
+            
+            if (isStopping())
+            {
+                return 0;
+            }
+            
+            if (score >= b)
+            {
+                PutTTEntry(state, depth, aOrig, b, b, tableMove);
+                return packMoveScore(0, b);
+            }
+        }
+        
+        int bestMove = 0;
+        int bestScore = -Short.MAX_VALUE;
+        
+        // Search the pv move if we got it from the table. Most of the time this is the
+        // best move. We search it before move generation since if we get a cut-off we
+        // can save the time.
+        if (tableMove != 0)
+        {
+            int score;
+            if (!isRepetition(tableMove, ply))
+            {
+                state.makeMove(tableMove);
+                score = -pvs(state, ply + 1, depth - 1, -b, -a, true) >> 16;
+                state.unmakeMove();
+                
+                if (isStopping())
+                {
+                    return 0;
+                }
+            }
+            else
+            {
+                // assume repeated boards are draws
+                score = 0;
+            }
+            
+            // check if the move is the best found so far and update the lower bound
+            if (bestScore < score)
+            {
+                bestScore = score;
+                bestMove = tableMove;
+                
+                if (a < bestScore)
+                {
+                    a = bestScore;
+                    
+                    // alpha-beta prune
+                    if (a >= b)
+                    {
+                        if (SearchStats.ENABLED)
+                        {
+                            countCutoff(ply, bestMove, true);
+                        }
+                        PutTTEntry(state, depth, aOrig, b, bestScore, bestMove);
+                        return packMoveScore(bestMove, bestScore);
+                    }
+                }
+            }
+        }
+        
+        // if at a pv node, there is no best move in the table, and there are many plys
+        // remaining to search, do a reduced search to find a good short first move to
+        // check.
+        int IIDMove = 0;
+        if (isPVNode && tableMove == 0 && depth > 3)
+        {
+            int[] moves = m_legalMoves[ply];
+            int moveCount = state.getAllLegalMoves(moves);
+            
+            int maxDepth = depth - 2;
+            for (int d = 1; d <= maxDepth; d++)
+            {
+                int best = -Short.MAX_VALUE;
+                for (int i = 0; i < moveCount; i++)
+                {
+                    int move = moves[i];
+                    state.makeMove(move);
+                    int score = -pvs(state, ply + 1, d - 1, -b, -a, IIDMove == move) >> 16;
+                    state.unmakeMove();
+                    
+                    if (isStopping())
+                    {
+                        return 0;
+                    }
+                    
+                    if (best < score)
+                    {
+                        best = score;
+                        IIDMove = move;
+                    }
+                }
+            }
+        }
+        
+        // find the move that last refuted the move that got us here
+        int player = state.getTurnPlayer();
+        int previousMove = state.getState().move;
+        int counterMove = previousMove != 0 ? m_counterMoves.get(1 - player, previousMove) : 0;
+        
+        // pick the moves in order of how promising they are, only doing the work to
+        // order the less promising moves if they are needed
+        MovePicker picker = m_movePickers[ply];
+        picker.init(state, ply, tableMove, IIDMove, counterMove);
+        
+        boolean prune = false;
+        boolean shareWork = m_busyNodes != null && depth >= BUSY_DEPTH;
+        boolean searchedFirst = tableMove != 0;
+        int[] deferredMoves = m_deferredMoves[ply];
+        int deferredCount = 0;
+        int deferredIndex = -1;
+        
+        while (true)
+        {
+            int move;
+            boolean quiet;
+            
+            if (deferredIndex < 0)
+            {
+                move = picker.next();
+                quiet = picker.isQuiet();
+                
+                // once the picker runs out, go back to the moves that were put off
+                if (move == 0)
+                {
+                    deferredIndex = 0;
+                    continue;
+                }
+            }
+            else
+            {
+                if (deferredIndex == deferredCount)
+                {
+                    break;
+                }
+                int deferredMove = deferredMoves[deferredIndex++];
+                move = deferredMove & ~DEFERRED_QUIET;
+                quiet = deferredMove != move;
+            }
+            
+            if (isStopping())
+            {
+                return 0;
+            }
+            
+            int score;
+            if (!isRepetition(move, ply))
+            {
+                state.makeMove(move);
+                long childHash = state.getHash();
+                
+                // Put off moves into nodes other searchers are busy with, but never the
+                // first move, since it decides how much of the rest can be pruned. The
+                // child's hash is only known once the move is made, so a move put off
+                // is made again later, but most moves are searched right away.
+                if (shareWork && searchedFirst && deferredIndex < 0 && m_busyNodes.isBusy(childHash))
+                {
+                    state.unmakeMove();
+                    deferredMoves[deferredCount++] = quiet ? move | DEFERRED_QUIET : move;
+                    continue;
+                }
+                
+                boolean marked = shareWork && m_busyNodes.mark(childHash);
+                
+                if (quiet)
+                {
+                    // reduce the move when we can get away with it
+                    int searchDepth = depth < 3 ? depth - 1 : depth - 2;
+                    // Search moves not likely to score higher than what is already found with a
+                    // null window. This means that the search will finish quickly if there is no
+                    // better score, and return quickly if there is one.
+                    score = -pvs(state, ply + 1, searchDepth, -(a + 1), -a, false) >> 16;
+                    // If there is a score that may be better do a full search with the normal
+                    // window and search depth.
+                    if (a < score && score < b && depth > 1)
+                    {
+                        if (SearchStats.ENABLED)
+                        {
+                            m_stats.researches++;
+                        }
+                        score = -pvs(state, ply + 1, depth - 1, -b, -a, false) >> 16;
+                    }
+                }
+                else
+                {
+                    score = -pvs(state, ply + 1, depth - 1, -b, -a, false) >> 16;
+                }
+                
+                if (marked)
+                {
+                    m_busyNodes.unmark(childHash);
+                }
+                state.unmakeMove();
+                
+                // the score of a stopped search can't be trusted
+                if (isStopping())
+                {
+                    return 0;
+                }
+            }
+            else
+            {
+                // assume repeated boards are draws
+                score = 0;
+            }
+            boolean isFirstMove = !searchedFirst;
+            searchedFirst = true;
+            
+            // check if the move is the best found so far and update the lower bound
+            if (bestScore < score)
+            {
+                bestScore = score;
+                bestMove = move;
+                
+                if (a < bestScore)
+                {
+                    a = bestScore;
+                    
+                    // alpha-beta prune
+                    if (a >= b)
+                    {
+                        if (SearchStats.ENABLED)
+                        {
+                            countCutoff(ply, bestMove, isFirstMove);
+                        }
+                        prune = true;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        // update transposition table
+        PutTTEntry(state, depth, aOrig, b, bestScore, bestMove);
+        
+        // update killer and history tables with move if a non-capture
+        if (prune && ((bestMove >> 25) & 0x3) == 0)
+        {
+            m_killers.add(ply, bestMove);
+            m_history.add(player, bestMove, depth);
+            
+            if (previousMove != 0)
+            {
+                m_counterMoves.set(1 - player, previousMove, bestMove);
+            }
+        }
+        
+        // return best score and move
+        return packMoveScore(bestMove, bestScore);
+    }
+    
+    /**
+     * Counts a beta cut-off in the main search.
+     * 
+     * @param ply
+     *            The ply of the node.
+     * @param move
+     *            The move that caused the cut-off.
+     * @param isFirstMove
+     *            If the move was the first searched at the node.
+     */
+    private void countCutoff(int ply, int move, boolean isFirstMove)
+    {
+        m_stats.cutoffs++;
+        if (isFirstMove)
+        {
+            m_stats.firstMoveCutoffs++;
+        }
+        if (m_killers.contains(ply, move))
+        {
+            m_stats.killerCutoffs++;
+        }
+    }
+    
+    /**
+     * Does a quescencse search from a given node.
+     * 
+     * @param state
+     *            The current search node.
+     * @param ply
+     *            The ply of the node.
+     * @param depth
+     *            The depth left until the cutoff.
+     * @param a
+     *            The alpha value.
+     * @param b
+     *            The beta value.
+     * @return The value of this node in the most significant 16 bits.
+     */
+    private int quiescence(StateExplorer state, int ply, int depth, int a, int b)
+    {
+        countNode();
+        if (SearchStats.ENABLED)
+        {
+            m_stats.quiescenceNodes++;
+        }
+        
+        // if a leaf state evaluate and return the value
+        if (depth <= 0 || state.isTerminal())
+        {
+            return packMoveScore(0, state.evaluate());
+        }
+        
+        // Check if we have visited this state before. Quiescence results are stored
+        // with a depth of 0, so any entry from the main search is deep enough to use.
+        long entry = TranspositionTable.NO_VALUE;
+        int tableMove = 0;
+        if (QUIESCENCE_TABLE)
+        {
+            entry = m_transpositionTable.get(state.getHash(), 0, state.getTurnNumber());
+            if (SearchStats.ENABLED)
+            {
+                m_stats.tableProbes++;
+            }
+        }
+        
+        if (entry != TranspositionTable.NO_VALUE)
+        {
+            if (SearchStats.ENABLED)
+            {
+                m_stats.tableHits++;
+            }
+            
+            int score = TranspositionTable.ExtractScore(entry);
+            tableMove = state.fromTableMove(TranspositionTable.ExtractMove(entry));
+            
+            // the score represents a different value based on the node type
+            switch (TranspositionTable.ExtractNodeType(entry))
+            {
+                case TranspositionTable.PV_NODE:
+                    if (SearchStats.ENABLED)
+                    {
+                        m_stats.tableCutoffs++;
+                    }
+                    return packMoveScore(tableMove, score);
+                case TranspositionTable.CUT_NODE:
+                    a = Math.max(a, score);
+                    break;
+                case TranspositionTable.ALL_NODE:
+                    b = Math.min(b, score);
+                    break;
+            }
+            // alpha-beta prune
+            if (a >= b)
+            {
+                if (SearchStats.ENABLED)
+                {
+                    m_stats.tableCutoffs++;
+                }
+                return packMoveScore(tableMove, score);
+            }
+        }
+        
+        // Calculate the standing pat score. Only the side of the window it falls on
+        // matters if it is outside the window, so it may be evaluated lazily.
+        int eval = state.evaluate(a, b);
+        
+        if (eval >= b)
+        {
+            if (QUIESCENCE_TABLE)
+            {
+                m_transpositionTable.put(state.getHash(), TranspositionTable.CUT_NODE, 0, eval, 0,
+                        state.getTurnNumber());
+            }
+            return packMoveScore(0, eval);
+        }
+        
+        // get loud moves, without generating the quiet moves at all
+        int[] criticalMoves = m_criticalMoves[ply];
+        int criticalMovesCount = state.getTacticalMoves(criticalMoves);
+        
+        // if the state is quiet return the evaluation, which is only exact if it is
+        // within the window
+        if (criticalMovesCount == 0)
+        {
+            if (QUIESCENCE_TABLE)
+            {
+                PutTTEntry(state, 0, a, b, eval, 0);
+            }
+            return packMoveScore(0, eval);
+        }
+        
+        if (a < eval)
+        {
+            a = eval;
+        }
+        int aOrig = a;
+        
+        // sort any important moves and place them first to get more prunes
+        Arrays.sort(criticalMoves, 0, criticalMovesCount);
+        
+        // The move from the table is searched first. It is only used if it is one of
+        // the loud moves, so a move from an unrelated state that shares the hash
+        // can't be played.
+        if (tableMove != 0)
+        {
+            for (int i = 0; i < criticalMovesCount - 1; i++)
+            {
+                int move = criticalMoves[i];
+                if ((move & 0x3FFF) == tableMove)
+                {
+                    System.arraycopy(criticalMoves, i + 1, criticalMoves, i, (criticalMovesCount - 1) - i);
+                    criticalMoves[criticalMovesCount - 1] = move;
+                    break;
+                }
+            }
+        }
+        
+        // search the best moves
+        int bestScore = -Short.MAX_VALUE;
+        int bestMove = 0;
+        for (int i = 0; i < criticalMovesCount; i++)
+        {
+            // if time is up we need to stop searching, and we shouldn't use incomplete
+            // search results
+            if (isStopping())
+            {
+                return -Short.MAX_VALUE;
+            }
+            
+            // get the next move
+            int move = criticalMoves[(criticalMovesCount - 1) - i];
+            // apply the move to the board
+            state.makeMove(move);
+            // do a search to find the score of the node
+            int score = -quiescence(state, ply + 1, depth - 1, -b, -a) >> 16;
+            // undo the move
+            state.unmakeMove();
+            
+            if (isStopping())
+            {
+                return -Short.MAX_VALUE;
+            }
+            
+            // check if the move is the best found so far and update the lower bound
+            if (bestScore < score)
+            {
+                bestScore = score;
+                bestMove = move;
+                
+                if (a < bestScore)
+                {
+                    a = bestScore;
+                    // alpha-beta prune
+                    if (a >= b)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        
+        // update transposition table
+        if (QUIESCENCE_TABLE)
+        {
+            PutTTEntry(state, 0, aOrig, b, bestScore, bestMove);
+        }
+        
+        return packMoveScore(bestMove, bestScore);
+    }
+    
+    /**
+     * Reads a comma separated list of numbers from a property value.
+     * 
+     * @param value
+     *            The list to read, which may be empty.
+     * @return The numbers in the list.
+     */
+    private static int[] parseList(String value)
+    {
+        if (value.trim().isEmpty())
+        {
+            return new int[0];
+        }
+        
+        String[] items = value.split(",");
+        int[] numbers = new int[items.length];
+        for (int i = 0; i < items.length; i++)
+        {
+            numbers[i] = Integer.parseInt(items[i].trim());
+        }
+        return numbers;
+    }
+    
+    /**
+     * Packs the moves and the score into a single integer.
+     * 
+     * @param move
+     *            The move to pack.
+     * @param score
+     *            The score to pack.
+     * @return The packed move and score.
+     */
+    private static int packMoveScore(int move, int score)
+    {
+        return (score << 16) | (move & 0x3FFF);
+    }
+    
+    /**
+     * Updates the transposition table value for a node.
+     */
+    private void PutTTEntry(StateExplorer state, int depth, int a, int b, int score, int move)
+    {
+        int nodeType;
+        if (score <= a)
+        {
+            nodeType = TranspositionTable.ALL_NODE;
+        }
+        else if (b <= score)
+        {
+            nodeType = TranspositionTable.CUT_NODE;
+        }
+        else
+        {
+            nodeType = TranspositionTable.PV_NODE;
+        }
+        m_transpositionTable.put(state.getHash(), nodeType, depth, score, state.toTableMove(move & 0x3FFF),
+                state.getTurnNumber());
+    }
+    
+    /**
+     * Checks if a move would be a repetition loop.
+     * 
+     * @param state
+     *            The current move to check if repeated.
+     * @param ply
+     *            The current ply of the search.
+     */
+    private boolean isRepetition(int move, int ply)
+    {
+        return ply == 0 && m_repeatedMove != 0 && (move & 0x3FFF) == m_repeatedMove;
+    }
+}
@@ -0,0 +1,417 @@
+package student_player;
+
+import tablut.TablutBoardState;
+
+/**
+ * Tries to prove that the player to move at the root can force a win within a
+ * limited number of plies, white by moving the king to a corner and black by
+ * capturing the king. The alpha-beta search only sees such wins once they are
+ * within its depth, and its evaluation can't tell a forced win from a good
+ * position, while a proof is exact.
+ * 
+ * The solver uses depth-first proof-number search (df-pn). Each node has a
+ * proof number, the least number of leaves that must be shown to be wins to
+ * prove the node, and a disproof number, the least number of leaves that must
+ * be shown not to be wins to disprove it. The search always expands the most
+ * proving node, which concentrates the effort on the narrowest lines, such as
+ * the king's runs to the edge, rather than searching every line to the same
+ * depth. Numbers are stored from the point of view of the player to move at
+ * each node: phi is the proof number of that player winning, and delta is the
+ * disproof number.
+ * 
+ * Only the player to move at the root is trying to win, so a node the defender
+ * has reached without losing once the plies run out is disproven. The depth is
+ * stored with each result, since a win proven with few plies left is still a
+ * win with more, and a line disproven with many plies left stays disproven with
+ * fewer, but anything else only holds for the same depth.
+ * 
+ * Results are kept in a hash table of their own, where each entry is a key and
+ * a data long. The move lists and child numbers are preallocated for each ply,
+ * so the search doesn't allocate anything per node.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class Solver
+{
+    /**
+     * The most plies that can be searched.
+     */
+    public static final int   MAX_DEPTH      = 31;
+    
+    /**
+     * The proof or disproof number of a node that is proven or disproven. Kept
+     * small enough to pack into 28 bits.
+     */
+    private static final int  INFINITY       = (1 << 28) - 1;
+    
+    /**
+     * Mixed into the key when it is white's turn. State hashes depend on the
+     * root's turn, so they don't say whose turn it is.
+     */
+    private static final long PLAYER_KEY     = 0x5DEECE66DA3B9F4BL;
+    
+    /**
+     * Mixed into the key when white is trying to win. A node that is disproven
+     * for one attacker may be undecided for the other.
+     */
+    private static final long ATTACKER_KEY   = 0x2545F4914F6CDD1DL;
+    
+    /**
+     * How many nodes are searched between checks of the time.
+     */
+    private static final int  TIME_CHECK     = 1024;
+    
+    private final Evaluator   m_evaluator;
+    private final long[]      m_table;
+    private final int         m_indexMask;
+    private final int[][]     m_moves        = new int[MAX_DEPTH][StateExplorer.MAX_LEGAL_MOVES];
+    private final long[][]    m_childHashes  = new long[MAX_DEPTH][StateExplorer.MAX_LEGAL_MOVES];
+    private final int[][]     m_childPhis    = new int[MAX_DEPTH][StateExplorer.MAX_LEGAL_MOVES];
+    private final int[][]     m_childDeltas  = new int[MAX_DEPTH][StateExplorer.MAX_LEGAL_MOVES];
+    private final int[]       m_moveCounts   = new int[MAX_DEPTH];
+    
+    private StateExplorer     m_explorer;
+    private int               m_attacker;
+    private long              m_stopTime;
+    private boolean           m_stopped;
+    private long              m_nodes;
+    private int               m_solvedDepth;
+    private int               m_phi;
+    private int               m_delta;
+    
+    /**
+     * Constructs a solver.
+     * 
+     * @param evaluator
+     *            The evaluator given to the state explorer. No states are
+     *            evaluated, but the explorer needs one.
+     * @param size
+     *            The size in megabytes to reserve for the hash table. The number of
+     *            entries is rounded down to a power of two.
+     */
+    public Solver(Evaluator evaluator, int size)
+    {
+        int entryCount = Integer.highestOneBit((int)Math.min(Math.max(((long)size * 1024 * 1024) / 16, 1), 1 << 29));
+        m_evaluator = evaluator;
+        m_table = new long[entryCount * 2];
+        m_indexMask = entryCount - 1;
+    }
+    
+    /**
+     * Tries to prove a forced win for the player to move. Searches with one more
+     * ply for the attacker each iteration, so the shortest win is found first.
+     * 
+     * @param boardState
+     *            The root state.
+     * @param maxDepth
+     *            The most plies the win may take.
+     * @param stopTime
+     *            The time in nanoseconds when the solver must give up.
+     * @return The first move of a forced win, with the source square in bits 0-6
+     *         and the destination square in bits 7-13, or 0 if no win was proven.
+     */
+    public int solve(TablutBoardState boardState, int maxDepth, long stopTime)
+    {
+        m_explorer = new StateExplorer(m_evaluator, boardState);
+        m_attacker = m_explorer.getTurnPlayer();
+        m_stopTime = stopTime;
+        m_stopped = false;
+        m_nodes = 0;
+        m_solvedDepth = 0;
+        
+        maxDepth = Math.min(Math.min(maxDepth, MAX_DEPTH), m_explorer.getRemainingMoves());
+        
+        // the attacker moves on the odd plies, so only odd depths are worth trying
+        for (int depth = 1; depth <= maxDepth && !m_stopped; depth += 2)
+        {
+            search(0, depth, INFINITY, INFINITY);
+            
+            if (!m_stopped && m_phi == 0)
+            {
+                // play a move into a child the defender loses
+                for (int i = 0; i < m_moveCounts[0]; i++)
+                {
+                    if (m_childDeltas[0][i] == 0)
+                    {
+                        m_solvedDepth = depth;
+                        return m_moves[0][i] & 0x3FFF;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Gets the number of nodes expanded by the last call to solve.
+     */
+    public long getNodeCount()
+    {
+        return m_nodes;
+    }
+    
+    /**
+     * Gets the number of plies of the win found by the last call to solve, or 0
+     * if no win was found.
+     */
+    public int getSolvedDepth()
+    {
+        return m_solvedDepth;
+    }
+    
+    /**
+     * Searches a node until its proof or disproof number reaches its threshold.
+     * The resulting numbers are left in m_phi and m_delta.
+     * 
+     * @param ply
+     *            The number of moves from the root.
+     * @param depth
+     *            The number of plies left to search.
+     * @param thresholdPhi
+     *            The proof number threshold.
+     * @param thresholdDelta
+     *            The disproof number threshold.
+     */
+    private void search(int ply, int depth, int thresholdPhi, int thresholdDelta)
+    {
+        m_nodes++;
+        if ((m_nodes % TIME_CHECK) == 0 && System.nanoTime() >= m_stopTime)
+        {
+            m_stopped = true;
+        }
+        if (m_stopped)
+        {
+            return;
+        }
+        
+        StateExplorer state = m_explorer;
+        int[] moves = m_moves[ply];
+        int[] childPhis = m_childPhis[ply];
+        int[] childDeltas = m_childDeltas[ply];
+        int moveCount = expand(ply, depth);
+        
+        if (moveCount == 0)
+        {
+            // a player that can't move can't win, so the attacker hasn't won
+            setDisproven(state.getTurnPlayer());
+            store(state.getHash(), state.getTurnPlayer(), depth, m_phi, m_delta);
+            return;
+        }
+        
+        while (true)
+        {
+            // The player to move wins if any child is lost by the opponent, and loses
+            // only if every child is won by the opponent.
+            int phi = INFINITY;
+            int secondDelta = INFINITY;
+            long deltaSum = 0;
+            int best = 0;
+            
+            for (int i = 0; i < moveCount; i++)
+            {
+                int childDelta = childDeltas[i];
+                deltaSum += childPhis[i];
+                
+                if (childDelta < phi)
+                {
+                    secondDelta = phi;
+                    phi = childDelta;
+                    best = i;
+                }
+                else if (childDelta < secondDelta)
+                {
+                    secondDelta = childDelta;
+                }
+            }
+            int delta = (int)Math.min(deltaSum, INFINITY);
+            
+            if (phi >= thresholdPhi || delta >= thresholdDelta)
+            {
+                m_phi = phi;
+                m_delta = delta;
+                store(state.getHash(), state.getTurnPlayer(), depth, phi, delta);
+                return;
+            }
+            
+            // Search the most proving child until it is no longer the best, or until
+            // this node would pass one of its thresholds.
+            int bestPhi = childPhis[best];
+            int childThresholdPhi = (int)Math.min((long)thresholdDelta + bestPhi - delta, INFINITY);
+            int childThresholdDelta = Math.min(thresholdPhi, secondDelta + 1);
+            
+            state.makeMove(moves[best]);
+            search(ply + 1, depth - 1, childThresholdPhi, childThresholdDelta);
+            state.unmakeMove();
+            
+            if (m_stopped)
+            {
+                return;
+            }
+            childPhis[best] = m_phi;
+            childDeltas[best] = m_delta;
+        }
+    }
+    
+    /**
+     * Generates the moves of a node and finds the starting numbers of the
+     * children. Children that end the game or run out of plies are solved
+     * immediately.
+     * 
+     * @param ply
+     *            The number of moves from the root.
+     * @param depth
+     *            The number of plies left to search.
+     * @return The number of moves to search. Stops at the first move found that
+     *         wins for the player to move.
+     */
+    private int expand(int ply, int depth)
+    {
+        StateExplorer state = m_explorer;
+        int[] moves = m_moves[ply];
+        long[] childHashes = m_childHashes[ply];
+        int[] childPhis = m_childPhis[ply];
+        int[] childDeltas = m_childDeltas[ply];
+        
+        int moveCount = state.getAllLegalMoves(moves);
+        
+        for (int i = 0; i < moveCount; i++)
+        {
+            state.makeMove(moves[i]);
+            
+            int childPlayer = state.getTurnPlayer();
+            int winner = state.getWinner();
+            childHashes[i] = state.getHash();
+            
+            if (winner == childPlayer)
+            {
+                m_phi = 0;
+                m_delta = INFINITY;
+            }
+            else if (winner == 1 - childPlayer)
+            {
+                m_phi = INFINITY;
+                m_delta = 0;
+            }
+            else if (depth <= 1 || state.isTerminal())
+            {
+                setDisproven(childPlayer);
+            }
+            else if (depth == 2)
+            {
+                // the attacker's last move only needs to be checked for a win
+                if (state.hasWinningMove(m_moves[ply + 1]))
+                {
+                    m_phi = 0;
+                    m_delta = INFINITY;
+                }
+                else
+                {
+                    setDisproven(childPlayer);
+                }
+            }
+            else
+            {
+                lookup(childHashes[i], childPlayer, depth - 1);
+            }
+            
+            childPhis[i] = m_phi;
+            childDeltas[i] = m_delta;
+            state.unmakeMove();
+            
+            // the player to move has won, so the other moves don't matter
+            if (m_delta == 0)
+            {
+                moveCount = i + 1;
+                break;
+            }
+        }
+        m_moveCounts[ply] = moveCount;
+        return moveCount;
+    }
+    
+    /**
+     * Sets m_phi and m_delta for a node the attacker has not won.
+     * 
+     * @param turnPlayer
+     *            The player to move at the node.
+     */
+    private void setDisproven(int turnPlayer)
+    {
+        m_phi = (turnPlayer == m_attacker) ? INFINITY : 0;
+        m_delta = (turnPlayer == m_attacker) ? 0 : INFINITY;
+    }
+    
+    /**
+     * Gets the numbers of a node from the table into m_phi and m_delta. Nodes
+     * that are not stored, or were stored for a depth the result doesn't apply
+     * to, start with both numbers at 1.
+     * 
+     * @param hash
+     *            The hash of the node.
+     * @param turnPlayer
+     *            The player to move at the node.
+     * @param depth
+     *            The number of plies left to search from the node.
+     */
+    private void lookup(long hash, int turnPlayer, int depth)
+    {
+        long key = getKey(hash, turnPlayer);
+        int index = ((int)key & m_indexMask) * 2;
+        
+        m_phi = 1;
+        m_delta = 1;
+        
+        if (m_table[index] != key)
+        {
+            return;
+        }
+        
+        long data = m_table[index + 1];
+        int phi = (int)(data >>> 36);
+        int delta = (int)(data >>> 8) & INFINITY;
+        int entryDepth = (int)data & 0xFF;
+        
+        boolean attackerToMove = turnPlayer == m_attacker;
+        boolean proven = attackerToMove ? phi == 0 : delta == 0;
+        boolean disproven = attackerToMove ? delta == 0 : phi == 0;
+        
+        if (entryDepth == depth || (proven && entryDepth < depth) || (disproven && entryDepth > depth))
+        {
+            m_phi = phi;
+            m_delta = delta;
+        }
+    }
+    
+    /**
+     * Stores the numbers of a node in the table, replacing whatever was in its
+     * slot.
+     * 
+     * @param hash
+     *            The hash of the node.
+     * @param turnPlayer
+     *            The player to move at the node.
+     * @param depth
+     *            The number of plies left to search from the node.
+     * @param phi
+     *            The proof number of the node.
+     * @param delta
+     *            The disproof number of the node.
+     */
+    private void store(long hash, int turnPlayer, int depth, int phi, int delta)
+    {
+        long key = getKey(hash, turnPlayer);
+        int index = ((int)key & m_indexMask) * 2;
+        
+        m_table[index] = key;
+        m_table[index + 1] = ((long)phi << 36) | ((long)delta << 8) | depth;
+    }
+    
+    /**
+     * Gets the key of a node in the table.
+     */
+    private long getKey(long hash, int turnPlayer)
+    {
+        long key = turnPlayer == StateExplorer.WHITE ? hash ^ PLAYER_KEY : hash;
+        return m_attacker == StateExplorer.WHITE ? key ^ ATTACKER_KEY : key;
+    }
+}
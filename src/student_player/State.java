@@ -21,6 +21,23 @@ public class State
      */
     public long             hash;
     
+    /*
+     * The zorbist hashes of the board under each of the 8 board symmetries,
+     * without the player hash. Only kept when canonical hashing is enabled.
+     */
+    public long[]           symmetricHashes       = new long[8];
+    
+    /*
+     * The hash shared by all symmetric states, the smallest symmetric hash with
+     * the player hash of this state.
+     */
+    public long             canonicalHash;
+    
+    /*
+     * The transformation code of the symmetry whose hash is the canonical hash.
+     */
+    public int              canonicalTransform;
+    
     /*
      * The move that arrived at this state. 0 if a root state.
      */
@@ -62,13 +79,79 @@ public class State
      */
     public int              kingSquare   = NOT_ON_BOARD;
     
+    /*
+     * The terms of the evaluation are kept up to date as moves are made, so only
+     * the rows and columns a move changes need to be looked at again. Each row
+     * and column is a line, rows are indexed 0-8 and columns 9-17.
+     */
+    
+    /**
+     * The squares black pieces can move to along their rows.
+     */
+    public BitBoard         blackRowMoves         = new BitBoard();
+    
+    /**
+     * The squares black pieces can move to along their columns, diagonally
+     * mirrored so each column is stored as a row.
+     */
+    public BitBoard         blackColMovesRefl     = new BitBoard();
+    
+    /**
+     * The squares white pieces and the king can move to along their rows.
+     */
+    public BitBoard         whiteRowMoves         = new BitBoard();
+    
+    /**
+     * The squares white pieces and the king can move to along their columns,
+     * diagonally mirrored so each column is stored as a row.
+     */
+    public BitBoard         whiteColMovesRefl     = new BitBoard();
+    
+    /**
+     * The number of moves black pieces can make along each line.
+     */
+    public int[]            blackLineMobility     = new int[18];
+    
+    /**
+     * The number of moves non-king white pieces can make along each line.
+     */
+    public int[]            whiteLineMobility     = new int[18];
+    
+    /**
+     * The total number of moves black pieces can make.
+     */
+    public int              blackMobility         = 0;
+    
+    /**
+     * The total number of moves non-king white pieces can make.
+     */
+    public int              whiteMobility         = 0;
+    
+    /**
+     * The squares the king can move to along its row and column, including the
+     * corners and the center. The white move boards only get the squares any
+     * piece may move to.
+     */
+    public int              kingRowMoves          = 0;
+    public int              kingColMoves          = 0;
+    
+    /**
+     * The square values of the black pieces less those of the white pieces.
+     */
+    public int              squareValues          = 0;
+    
+    /**
+     * The sum of the distances from each black piece to the king.
+     */
+    public int              blackKingDistance     = 0;
+    
     /**
      * Default constructor.
      */
     public State()
     {
     }
-
+    
     /**
      * Constructs a new board state from the board state.
      */
@@ -121,9 +204,28 @@ public class State
     public void copy(State state)
     {
         hash = state.hash;
+        if (StateExplorer.CANONICAL_HASHING)
+        {
+            System.arraycopy(state.symmetricHashes, 0, symmetricHashes, 0, 8);
+            canonicalHash = state.canonicalHash;
+            canonicalTransform = state.canonicalTransform;
+        }
         black.copy(state.black);
         white.copy(state.white);
         kingSquare = state.kingSquare;
+        
+        blackRowMoves.copy(state.blackRowMoves);
+        blackColMovesRefl.copy(state.blackColMovesRefl);
+        whiteRowMoves.copy(state.whiteRowMoves);
+        whiteColMovesRefl.copy(state.whiteColMovesRefl);
+        System.arraycopy(state.blackLineMobility, 0, blackLineMobility, 0, 18);
+        System.arraycopy(state.whiteLineMobility, 0, whiteLineMobility, 0, 18);
+        blackMobility = state.blackMobility;
+        whiteMobility = state.whiteMobility;
+        kingRowMoves = state.kingRowMoves;
+        kingColMoves = state.kingColMoves;
+        squareValues = state.squareValues;
+        blackKingDistance = state.blackKingDistance;
     }
     
     /**
@@ -145,6 +247,256 @@ public class State
         {
             hash ^= StateExplorer.HASH_KEYS[2][kingSquare];
         }
+        
+        if (StateExplorer.CANONICAL_HASHING)
+        {
+            for (int t = 0; t < 8; t++)
+            {
+                symmetricHashes[t] = getSymmetricHash(t);
+            }
+            updateCanonicalHash();
+        }
+    }
+    
+    /**
+     * Computes the hash of the board under one of the board symmetries, without
+     * the player hash, using the current piece lists.
+     * 
+     * @param transform
+     *            The transformation code of the symmetry.
+     * @return The hash of the transformed board.
+     */
+    public long getSymmetricHash(int transform)
+    {
+        long[][] keys = StateExplorer.SYMMETRIC_HASH_KEYS[transform];
+        long symmetricHash = 0;
+        for (int i = 0; i < blackCount; i++)
+        {
+            symmetricHash ^= keys[0][blackPieces[i]];
+        }
+        for (int i = 0; i < whiteCount; i++)
+        {
+            symmetricHash ^= keys[1][whitePieces[i]];
+        }
+        if (kingSquare != NOT_ON_BOARD)
+        {
+            symmetricHash ^= keys[2][kingSquare];
+        }
+        return symmetricHash;
+    }
+    
+    /**
+     * Finds the canonical hash from the symmetric hashes.
+     */
+    public void updateCanonicalHash()
+    {
+        int transform = 0;
+        for (int t = 1; t < 8; t++)
+        {
+            if (symmetricHashes[t] < symmetricHashes[transform])
+            {
+                transform = t;
+            }
+        }
+        
+        // the untransformed hash only differs from the symmetric hash by the player
+        canonicalTransform = transform;
+        canonicalHash = symmetricHashes[transform] ^ (hash ^ symmetricHashes[0]);
+    }
+    
+    /**
+     * Computes the evaluation terms for the whole board using the current piece
+     * lists.
+     */
+    public void calculateEvaluationTerms()
+    {
+        squareValues = 0;
+        for (int i = 0; i < blackCount; i++)
+        {
+            squareValues += Evaluator.SQUARE_VALUES[0][blackPieces[i]];
+        }
+        for (int i = 0; i < whiteCount; i++)
+        {
+            squareValues -= Evaluator.SQUARE_VALUES[1][whitePieces[i]];
+        }
+        if (kingSquare != NOT_ON_BOARD)
+        {
+            squareValues -= Evaluator.SQUARE_VALUES[2][kingSquare];
+        }
+        
+        calculateKingDistance();
+        
+        blackMobility = 0;
+        whiteMobility = 0;
+        for (int i = 0; i < 18; i++)
+        {
+            blackLineMobility[i] = 0;
+            whiteLineMobility[i] = 0;
+        }
+        updateLines(0x1FF, 0x1FF);
+    }
+    
+    /**
+     * Computes the sum of the distances from each black piece to the king using
+     * the current piece lists.
+     */
+    public void calculateKingDistance()
+    {
+        blackKingDistance = 0;
+        if (kingSquare != NOT_ON_BOARD)
+        {
+            for (int i = 0; i < blackCount; i++)
+            {
+                blackKingDistance += getDistance(blackPieces[i], kingSquare);
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of squares between two squares when moving only
+     * horizontally and vertically.
+     */
+    public static int getDistance(int square0, int square1)
+    {
+        return Math.abs((square0 % 9) - (square1 % 9)) + Math.abs((square0 / 9) - (square1 / 9));
+    }
+    
+    /**
+     * Recomputes the moves that can be made along the given rows and columns.
+     * 
+     * @param rows
+     *            The rows to update, with the bit for each row to update set.
+     * @param cols
+     *            The columns to update, with the bit for each column to update set.
+     */
+    public void updateLines(int rows, int cols)
+    {
+        int kingRow = kingSquare / 9;
+        int kingCol = kingSquare % 9;
+        
+        while (rows != 0)
+        {
+            int row = Integer.numberOfTrailingZeros(rows);
+            rows &= rows - 1;
+            
+            int blackBits = black.getRow(row);
+            int whiteBits = white.getRow(row);
+            int kingBit = (kingSquare != NOT_ON_BOARD && kingRow == row) ? (1 << kingCol) : 0;
+            int occupied = blackBits | whiteBits | kingBit;
+            
+            int lineMoves = getLineMoves(row, blackBits, occupied);
+            blackRowMoves.setRow(row, lineMoves & 0x1FF);
+            blackMobility += (lineMoves >>> 9) - blackLineMobility[row];
+            blackLineMobility[row] = lineMoves >>> 9;
+            
+            lineMoves = getLineMoves(row, whiteBits, occupied);
+            whiteMobility += (lineMoves >>> 9) - whiteLineMobility[row];
+            whiteLineMobility[row] = lineMoves >>> 9;
+            
+            if (kingBit != 0)
+            {
+                kingRowMoves = getKingMoves(kingCol, occupied);
+                lineMoves |= getPieceMoves(row, kingCol, occupied);
+            }
+            whiteRowMoves.setRow(row, lineMoves & 0x1FF);
+        }
+        
+        while (cols != 0)
+        {
+            int col = Integer.numberOfTrailingZeros(cols);
+            cols &= cols - 1;
+            
+            int blackBits = black.getCol(col);
+            int whiteBits = white.getCol(col);
+            int kingBit = (kingSquare != NOT_ON_BOARD && kingCol == col) ? (1 << kingRow) : 0;
+            int occupied = blackBits | whiteBits | kingBit;
+            
+            int lineMoves = getLineMoves(col, blackBits, occupied);
+            blackColMovesRefl.setRow(col, lineMoves & 0x1FF);
+            blackMobility += (lineMoves >>> 9) - blackLineMobility[9 + col];
+            blackLineMobility[9 + col] = lineMoves >>> 9;
+            
+            lineMoves = getLineMoves(col, whiteBits, occupied);
+            whiteMobility += (lineMoves >>> 9) - whiteLineMobility[9 + col];
+            whiteLineMobility[9 + col] = lineMoves >>> 9;
+            
+            if (kingBit != 0)
+            {
+                kingColMoves = getKingMoves(kingRow, occupied);
+                lineMoves |= getPieceMoves(col, kingRow, occupied);
+            }
+            whiteColMovesRefl.setRow(col, lineMoves & 0x1FF);
+        }
+    }
+    
+    /**
+     * Finds the moves a set of pieces on a row or column can make along it.
+     * 
+     * @param line
+     *            The index of the row or column.
+     * @param pieces
+     *            The bits for the pieces to move along the line.
+     * @param occupied
+     *            The bits for all pieces on the line.
+     * @return The squares any of the pieces can move to in bits 0-8, and the total
+     *         number of moves the pieces can make from bit 9.
+     */
+    private static int getLineMoves(int line, int pieces, int occupied)
+    {
+        int allMoves = 0;
+        int moveCount = 0;
+        while (pieces != 0)
+        {
+            int index = Integer.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            
+            int moves = getPieceMoves(line, index, occupied);
+            allMoves |= moves;
+            moveCount += Integer.bitCount(moves);
+        }
+        return allMoves | (moveCount << 9);
+    }
+    
+    /**
+     * Finds the squares a non-king piece can move to along a row or column. The
+     * board is symmetric, so rows and columns are handled the same way.
+     * 
+     * @param line
+     *            The index of the row or column.
+     * @param index
+     *            The index of the piece along the line.
+     * @param occupied
+     *            The bits for all pieces on the line.
+     * @return The squares the piece can move to.
+     */
+    private static int getPieceMoves(int line, int index, int occupied)
+    {
+        int moves = BitBoardConsts.legalMoves[index][occupied] & 0x1FF;
+        switch (line)
+        {
+            case 0:
+            case 8:
+                return moves & 0b011111110;
+            case 4:
+                return moves & 0b111101111;
+            default:
+                return moves;
+        }
+    }
+    
+    /**
+     * Finds the squares the king can move to along a row or column. Unlike the
+     * other pieces the king may move onto the corners and the center.
+     * 
+     * @param index
+     *            The index of the king along the line.
+     * @param occupied
+     *            The bits for all pieces on the line.
+     * @return The squares the king can move to.
+     */
+    private static int getKingMoves(int index, int occupied)
+    {
+        return BitBoardConsts.legalMoves[index][occupied] & 0x1FF;
     }
     
     /**
@@ -39,6 +39,29 @@ public class StateExplorer
     public static final long[][] HASH_KEYS;
     public static final long     PLAYER_HASH;
     
+    /**
+     * Indicates if states are hashed the same as all their symmetric states, so
+     * the transposition table entries are shared between them. Enabled with the
+     * "student_player.symmetry" system property.
+     */
+    public static final boolean  CANONICAL_HASHING  = Boolean.getBoolean("student_player.symmetry");
+    
+    /**
+     * The Zorbist hash values for each of the 8 board symmetries, indexed by the
+     * transformation code used by Utils.getTransformed.
+     */
+    public static final long[][][] SYMMETRIC_HASH_KEYS;
+    
+    /**
+     * Maps the transformation code and a board square to the transformed square.
+     */
+    private static final int[][] TRANSFORMED_SQUARES;
+    
+    /**
+     * Maps a transformation code to the code of the transformation that undoes it.
+     */
+    public static final int[]    INVERSE_TRANSFORMS = { 0, 1, 2, 3, 6, 5, 4, 7 };
+    
     /*
      * Creates all of the tile instances.
      */
@@ -54,9 +77,24 @@ public class StateExplorer
             HASH_KEYS[2][i] = rand.nextLong();
         }
         PLAYER_HASH = rand.nextLong();
+        
+        SYMMETRIC_HASH_KEYS = new long[8][3][81];
+        TRANSFORMED_SQUARES = new int[8][81];
+        for (int t = 0; t < 8; t++)
+        {
+            for (int i = 0; i < 81; i++)
+            {
+                int square = Utils.getTransformed(t, i);
+                TRANSFORMED_SQUARES[t][i] = square;
+                SYMMETRIC_HASH_KEYS[t][0][i] = HASH_KEYS[0][square];
+                SYMMETRIC_HASH_KEYS[t][1][i] = HASH_KEYS[1][square];
+                SYMMETRIC_HASH_KEYS[t][2][i] = HASH_KEYS[2][square];
+            }
+        }
     }
     
     private final Evaluator m_evaluator;
+    private EvaluationCache m_evaluationCache;
     private final State[]   m_stack;
     private final int       m_startTurn;
     
@@ -131,6 +169,7 @@ public class StateExplorer
         m_currentState.copy(state);
         m_currentState.updatePieceLists();
         m_currentState.calculateHash();
+        m_currentState.calculateEvaluationTerms();
     }
     
     /**
@@ -141,6 +180,14 @@ public class StateExplorer
         return m_winner != Board.NOBODY || m_turnNumber == MAX_TURNS;
     }
     
+    /**
+     * Gets the player who has won, or Board.NOBODY if nobody has won yet.
+     */
+    public int getWinner()
+    {
+        return m_winner;
+    }
+    
     /**
      * Gets the current turn number.
      */
@@ -149,6 +196,14 @@ public class StateExplorer
         return m_turnNumber;
     }
     
+    /**
+     * Gets the player whose turn it is.
+     */
+    public int getTurnPlayer()
+    {
+        return m_turnPlayer;
+    }
+    
     /**
      * Gets the number of moves left until the game ends.
      */
@@ -158,11 +213,87 @@ public class StateExplorer
     }
     
     /**
-     * Gets the hash for the current board state.
+     * Gets the hash for the current board state. If canonical hashing is enabled
+     * all symmetric states have the same hash.
      */
     public long getHash()
     {
-        return m_currentState.hash;
+        return CANONICAL_HASHING ? m_currentState.canonicalHash : m_currentState.hash;
+    }
+    
+    /**
+     * Converts a move in the current state to the orientation it is stored in
+     * the transposition table. If canonical hashing is enabled this is the
+     * orientation of the symmetric state whose hash is used.
+     * 
+     * @param move
+     *            The move to convert.
+     * @return The converted move.
+     */
+    public int toTableMove(int move)
+    {
+        if (!CANONICAL_HASHING || move == 0)
+        {
+            return move;
+        }
+        return transformMove(m_currentState.canonicalTransform, move);
+    }
+    
+    /**
+     * Converts a move from the transposition table to the orientation of the
+     * current state.
+     * 
+     * @param move
+     *            The move to convert.
+     * @return The converted move.
+     */
+    public int fromTableMove(int move)
+    {
+        if (!CANONICAL_HASHING || move == 0)
+        {
+            return move;
+        }
+        return transformMove(INVERSE_TRANSFORMS[m_currentState.canonicalTransform], move);
+    }
+    
+    /**
+     * Applies a transformation to the source and destination squares of a move.
+     * 
+     * @param transformCode
+     *            The code of the transformation to apply.
+     * @param move
+     *            The move to transform.
+     * @return The transformed move.
+     */
+    public static int transformMove(int transformCode, int move)
+    {
+        int[] squares = TRANSFORMED_SQUARES[transformCode];
+        return squares[move & 0x7F] | (squares[(move >> 7) & 0x7F] << 7);
+    }
+    
+    /**
+     * Adds or removes a piece from the hashes of a state.
+     * 
+     * @param state
+     *            The state to update.
+     * @param piece
+     *            The index of the type of piece, 0 for black, 1 for white, and 2
+     *            for the king.
+     * @param square
+     *            The board square of the piece.
+     */
+    private static void togglePiece(State state, int piece, int square)
+    {
+        state.hash ^= HASH_KEYS[piece][square];
+        
+        if (CANONICAL_HASHING)
+        {
+            long[] hashes = state.symmetricHashes;
+            for (int t = 0; t < 8; t++)
+            {
+                hashes[t] ^= SYMMETRIC_HASH_KEYS[t][piece][square];
+            }
+        }
     }
     
     /**
@@ -177,6 +308,22 @@ public class StateExplorer
      * Gets the value of this board for the player whose turn it is.
      */
     public short evaluate()
+    {
+        return evaluate(-Short.MAX_VALUE, Short.MAX_VALUE);
+    }
+    
+    /**
+     * Gets the value of this board for the player whose turn it is, only
+     * computing it exactly when it could fall within a search window.
+     * 
+     * @param a
+     *            The alpha value.
+     * @param b
+     *            The beta value.
+     * @return The value of the board. If not within the window, it may be
+     *         approximate.
+     */
+    public short evaluate(int a, int b)
     {
         if (m_winner != Board.NOBODY)
         {
@@ -188,12 +335,35 @@ public class StateExplorer
             // draw is 0 utility for both players
             return 0;
         }
+        else if (m_evaluationCache != null)
+        {
+            // only exact values may be cached, so don't evaluate lazily
+            int score = m_evaluationCache.get(m_currentState.hash, m_turnPlayer);
+            if (score == EvaluationCache.NO_VALUE)
+            {
+                short value = m_evaluator.evaluate(m_currentState, m_turnPlayer);
+                m_evaluationCache.put(m_currentState.hash, m_turnPlayer, value);
+                return value;
+            }
+            return (short)score;
+        }
         else
         {
-            return m_evaluator.evaluate(m_currentState, m_turnPlayer);
+            return m_evaluator.evaluate(m_currentState, m_turnPlayer, a, b);
         }
     }
     
+    /**
+     * Sets the cache used to avoid evaluating the same states again.
+     * 
+     * @param evaluationCache
+     *            The cache to use, or null to always evaluate states.
+     */
+    public void setEvaluationCache(EvaluationCache evaluationCache)
+    {
+        m_evaluationCache = evaluationCache;
+    }
+    
     private BitBoard m_pieces               = new BitBoard();
     private BitBoard m_piecesReflected      = new BitBoard();
     private BitBoard m_kingReachableCorners = new BitBoard();
@@ -202,6 +372,8 @@ public class StateExplorer
     private BitBoard m_capturedPieces       = new BitBoard();
     private BitBoard m_kingNeighbors        = new BitBoard();
     private BitBoard m_escapedKing          = new BitBoard();
+    private BitBoard m_legalMoves           = new BitBoard();
+    private BitBoard m_targets              = new BitBoard();
     
     /**
      * Applies a move to the state.
@@ -229,6 +401,11 @@ public class StateExplorer
         int toCol = to % 9;
         
         int opponent;
+        boolean kingMoved = false;
+        
+        // the rows and columns where pieces were added or removed
+        int changedRows = (1 << fromRow) | (1 << toRow);
+        int changedCols = (1 << fromCol) | (1 << toCol);
         
         if (m_turnPlayer == BLACK)
         {
@@ -239,8 +416,13 @@ public class StateExplorer
             nextState.black.set(toCol, toRow);
             
             // incrementally update the board hash
-            nextState.hash ^= HASH_KEYS[0][from];
-            nextState.hash ^= HASH_KEYS[0][to];
+            togglePiece(nextState, 0, from);
+            togglePiece(nextState, 0, to);
+            
+            // incrementally update the evaluation terms
+            nextState.squareValues += Evaluator.SQUARE_VALUES[0][to] - Evaluator.SQUARE_VALUES[0][from];
+            nextState.blackKingDistance += State.getDistance(to, nextState.kingSquare)
+                    - State.getDistance(from, nextState.kingSquare);
             
             // find pieces that can help the moved piece make a capture
             m_assistingPieces.copy(nextState.black);
@@ -284,7 +466,9 @@ public class StateExplorer
             if (m_capturedPieces.getValue(kingCol, kingRow))
             {
                 m_capturedPieces.clear(kingCol, kingRow);
-                nextState.hash ^= HASH_KEYS[2][nextState.kingSquare];
+                togglePiece(nextState, 2, nextState.kingSquare);
+                nextState.squareValues += Evaluator.SQUARE_VALUES[2][nextState.kingSquare];
+                nextState.blackKingDistance = 0;
                 nextState.kingSquare = State.NOT_ON_BOARD;
                 m_winner = BLACK;
             }
@@ -297,10 +481,14 @@ public class StateExplorer
             if (nextState.kingSquare == from)
             {
                 nextState.kingSquare = to;
+                kingMoved = true;
                 
                 // incrementally update the board hash
-                nextState.hash ^= HASH_KEYS[2][from];
-                nextState.hash ^= HASH_KEYS[2][to];
+                togglePiece(nextState, 2, from);
+                togglePiece(nextState, 2, to);
+                
+                // incrementally update the evaluation terms
+                nextState.squareValues -= Evaluator.SQUARE_VALUES[2][to] - Evaluator.SQUARE_VALUES[2][from];
             }
             else
             {
@@ -308,8 +496,11 @@ public class StateExplorer
                 nextState.white.set(toCol, toRow);
                 
                 // incrementally update the board hash
-                nextState.hash ^= HASH_KEYS[1][from];
-                nextState.hash ^= HASH_KEYS[1][to];
+                togglePiece(nextState, 1, from);
+                togglePiece(nextState, 1, to);
+                
+                // incrementally update the evaluation terms
+                nextState.squareValues -= Evaluator.SQUARE_VALUES[1][to] - Evaluator.SQUARE_VALUES[1][from];
             }
             
             // find pieces that can help the moved piece make a capture
@@ -353,7 +544,20 @@ public class StateExplorer
                     shiftIndex++;
                     num = num >> shiftIndex;
                     index += shiftIndex;
-                    nextState.hash ^= HASH_KEYS[opponent][index];
+                    togglePiece(nextState, opponent, index);
+                    
+                    // incrementally update the evaluation terms
+                    changedRows |= 1 << (index / 9);
+                    changedCols |= 1 << (index % 9);
+                    if (opponent == BLACK)
+                    {
+                        nextState.squareValues -= Evaluator.SQUARE_VALUES[0][index];
+                        nextState.blackKingDistance -= State.getDistance(index, nextState.kingSquare);
+                    }
+                    else
+                    {
+                        nextState.squareValues += Evaluator.SQUARE_VALUES[1][index];
+                    }
                 }
                 else
                 {
@@ -376,6 +580,18 @@ public class StateExplorer
         // update where each player's pieces are on the board for this turn
         nextState.updatePieceLists();
         
+        if (CANONICAL_HASHING)
+        {
+            nextState.updateCanonicalHash();
+        }
+        
+        // only the lines that changed need their moves found again
+        nextState.updateLines(changedRows, changedCols);
+        if (kingMoved)
+        {
+            nextState.calculateKingDistance();
+        }
+        
         // increment the turn
         m_turnNumber++;
         m_turnPlayer = m_turnNumber % 2;
@@ -393,6 +609,52 @@ public class StateExplorer
         m_currentState = m_stack[(m_turnNumber - m_startTurn)];
     }
     
+    /**
+     * Passes the turn to the other player without moving any pieces. This is not
+     * a legal move in the game, but is useful for the search to see if the
+     * opponent can do any harm even if given a free move. The state's move is
+     * set to 0 so a null move can be recognized.
+     */
+    public void makeNullMove()
+    {
+        State nextState = m_stack[(m_turnNumber - m_startTurn) + 1];
+        nextState.copy(m_currentState);
+        
+        nextState.move = 0;
+        nextState.hash ^= PLAYER_HASH;
+        nextState.canonicalHash ^= PLAYER_HASH;
+        nextState.updatePieceLists();
+        
+        m_turnNumber++;
+        m_turnPlayer = m_turnNumber % 2;
+        m_currentState = nextState;
+    }
+    
+    /**
+     * Undoes the null move last applied to this state.
+     */
+    public void unmakeNullMove()
+    {
+        unmakeMove();
+    }
+    
+    /**
+     * Checks if the king is on an edge of the board, where it may be able to
+     * reach a corner with a single move.
+     */
+    public boolean isKingNearEscape()
+    {
+        int kingSquare = m_currentState.kingSquare;
+        if (kingSquare == State.NOT_ON_BOARD)
+        {
+            return false;
+        }
+        
+        int kingRow = kingSquare / 9;
+        int kingCol = kingSquare % 9;
+        return kingRow == 0 || kingRow == 8 || kingCol == 0 || kingCol == 8;
+    }
+    
     /**
      * Gets the move packed with the type of move.
      * 
@@ -561,6 +823,223 @@ public class StateExplorer
         return move | (m_capturedPieces.cardinality() << 25);
     }
     
+    /**
+     * Gets the move packed with the captures it makes and if it wins the game.
+     * Cheaper than classifyMove since the king's routes to the corners are not
+     * checked.
+     * 
+     * @param move
+     *            The move to make. The index of the source square is packed into
+     *            bits 0-6. The index of the destination square is packed in bits
+     *            7-13.
+     * 
+     * @return The move with black win in bit 30, white win in bit 29, the number
+     *         of captures in bits 26-25, and the original move in bits 0-13.
+     */
+    public int classifyCaptures(int move)
+    {
+        State state = m_currentState;
+        
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
+        
+        if (m_turnPlayer == BLACK)
+        {
+            // find pieces that can help the moved piece make a capture
+            m_pieces.copy(state.black);
+            m_pieces.clear(from);
+            m_pieces.set(to);
+            
+            m_assistingPieces.copy(m_pieces);
+            m_assistingPieces.or(BitBoardConsts.onlyKingAllowed);
+            m_assistingPieces.and(BitBoardConsts.twoCrosses[to]);
+            
+            // find captured pieces
+            int kingRow = state.kingSquare / 9;
+            int kingCol = state.kingSquare % 9;
+            
+            m_opponentPieces.copy(state.white);
+            m_opponentPieces.set(kingCol, kingRow);
+            
+            m_capturedPieces.copy(m_assistingPieces);
+            m_capturedPieces.toNeighbors();
+            m_capturedPieces.and(m_opponentPieces);
+            m_capturedPieces.and(BitBoardConsts.oneCrosses[to]);
+            
+            if (m_capturedPieces.getValue(kingCol, kingRow))
+            {
+                // enforce the special rules for capturing the king
+                m_kingNeighbors.clear();
+                m_kingNeighbors.set(kingCol, kingRow);
+                m_kingNeighbors.toNeighbors();
+                
+                int blackSurround = BitBoard.andCount(m_kingNeighbors, m_pieces);
+                int centerSurround = BitBoard.andCount(m_kingNeighbors, BitBoardConsts.center);
+                boolean atCenter = BitBoardConsts.king4Surround.getValue(kingCol, kingRow);
+                
+                // the king is safe on the center cross squares unless surrounded
+                if (atCenter && blackSurround + centerSurround < 4)
+                {
+                    m_capturedPieces.clear(kingCol, kingRow);
+                }
+                else
+                {
+                    // black winning move
+                    move |= (1 << 30);
+                }
+            }
+        }
+        else
+        {
+            // if king gets to a corner, white wins
+            int kingSquare = state.kingSquare;
+            if (kingSquare == from)
+            {
+                kingSquare = to;
+                
+                if (BitBoardConsts.corners.getValue(to))
+                {
+                    move |= (1 << 29);
+                }
+            }
+            
+            // find pieces that can help the moved piece make a capture
+            m_assistingPieces.copy(state.white);
+            m_assistingPieces.clear(from);
+            m_assistingPieces.set(to);
+            m_assistingPieces.set(kingSquare);
+            m_assistingPieces.or(BitBoardConsts.onlyKingAllowed);
+            m_assistingPieces.and(BitBoardConsts.twoCrosses[to]);
+            
+            // find captured pieces
+            m_capturedPieces.copy(m_assistingPieces);
+            m_capturedPieces.toNeighbors();
+            m_capturedPieces.and(state.black);
+            m_capturedPieces.and(BitBoardConsts.oneCrosses[to]);
+        }
+        
+        return move | (m_capturedPieces.cardinality() << 25);
+    }
+    
+    /**
+     * Checks if the king can move to a corner from the current state.
+     */
+    public boolean canKingReachCorner()
+    {
+        State state = m_currentState;
+        
+        m_pieces.copy(state.black);
+        m_pieces.or(state.white);
+        m_pieces.set(state.kingSquare);
+        m_piecesReflected.copy(m_pieces);
+        m_piecesReflected.mirrorDiagonal();
+        
+        BitBoardConsts.getLegalMoves(state.kingSquare, true, m_pieces, m_piecesReflected, m_kingReachableCorners);
+        m_kingReachableCorners.and(BitBoardConsts.corners);
+        return !m_kingReachableCorners.isEmpty();
+    }
+    
+    /**
+     * Gets a move that makes no captures packed with how it changes the king's
+     * routes to the corners. Only valid for moves that make no captures, since
+     * captured pieces are not removed from the board.
+     * 
+     * @param move
+     *            The move to make. The index of the source square is packed into
+     *            bits 0-6. The index of the destination square is packed in bits
+     *            7-13.
+     * @param kingCanLeave
+     *            If the king can reach a corner in the current state.
+     * 
+     * @return The move with, if black's turn and the move blocks the king's exit,
+     *         bit 27 set, if white's turn and the move puts the king in sight of a
+     *         corner, bit 24 set, and the original move in bits 0-13.
+     */
+    public int classifyKingMove(int move, boolean kingCanLeave)
+    {
+        // black can only block an exit, and white can only open one
+        if ((m_turnPlayer == BLACK) != kingCanLeave)
+        {
+            return move;
+        }
+        
+        State state = m_currentState;
+        
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
+        
+        int kingSquare = state.kingSquare == from ? to : state.kingSquare;
+        
+        m_pieces.copy(state.black);
+        m_pieces.or(state.white);
+        m_pieces.set(state.kingSquare);
+        m_pieces.clear(from);
+        m_pieces.set(to);
+        m_piecesReflected.copy(m_pieces);
+        m_piecesReflected.mirrorDiagonal();
+        
+        BitBoardConsts.getLegalMoves(kingSquare, true, m_pieces, m_piecesReflected, m_kingReachableCorners);
+        m_kingReachableCorners.and(BitBoardConsts.corners);
+        
+        if (m_turnPlayer == BLACK)
+        {
+            return m_kingReachableCorners.isEmpty() ? move | (1 << 27) : move;
+        }
+        else
+        {
+            return m_kingReachableCorners.isEmpty() ? move : move | (1 << 24);
+        }
+    }
+    
+    /**
+     * Checks if a move can be made by the turn player in the current state.
+     * 
+     * @param move
+     *            The move to check. The index of the source square is packed into
+     *            bits 0-6. The index of the destination square is packed in bits
+     *            7-13.
+     * @return True if the move is legal.
+     */
+    public boolean isLegalMove(int move)
+    {
+        // extract the board squares moved from and to from the move integer.
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
+        
+        if (from >= 81 || to >= 81)
+        {
+            return false;
+        }
+        
+        // make sure the turn player has a piece on the source square
+        boolean isKing = false;
+        if (m_turnPlayer == BLACK)
+        {
+            if (!m_currentState.black.getValue(from))
+            {
+                return false;
+            }
+        }
+        else
+        {
+            isKing = (from == m_currentState.kingSquare);
+            if (!isKing && !m_currentState.white.getValue(from))
+            {
+                return false;
+            }
+        }
+        
+        // check that the piece can reach the destination square
+        m_pieces.copy(m_currentState.black);
+        m_pieces.or(m_currentState.white);
+        m_pieces.set(m_currentState.kingSquare);
+        m_piecesReflected.copy(m_pieces);
+        m_piecesReflected.mirrorDiagonal();
+        
+        BitBoardConsts.getLegalMoves(from, isKing, m_pieces, m_piecesReflected, m_legalMoves);
+        return m_legalMoves.getValue(to);
+    }
+    
     /**
      * Finds all moves that the player can currently make.
      * 
@@ -576,27 +1055,211 @@ public class StateExplorer
         m_pieces.set(m_currentState.kingSquare);
         m_piecesReflected.copy(m_pieces);
         m_piecesReflected.mirrorDiagonal();
-
+        
         int moveCount = 0;
         if (m_turnPlayer == BLACK)
         {
             for (int i = 0; i < m_currentState.blackCount; i++)
             {
-                moveCount = getMoves(moves, moveCount, m_currentState.blackPieces[i], false);
+                moveCount = getMoves(moves, moveCount, m_currentState.blackPieces[i], false, null);
             }
         }
         else
         {
-            moveCount = getMoves(moves, moveCount, m_currentState.kingSquare, true);
+            moveCount = getMoves(moves, moveCount, m_currentState.kingSquare, true, null);
             
             for (int i = 0; i < m_currentState.whiteCount; i++)
             {
-                moveCount = getMoves(moves, moveCount, m_currentState.whitePieces[i], false);
+                moveCount = getMoves(moves, moveCount, m_currentState.whitePieces[i], false, null);
             }
         }
         return moveCount;
     }
     
+    /**
+     * Finds the moves that the player can currently make that win, capture, or
+     * change the king's routes to the corners. Only the destination squares where
+     * such a move is possible are considered, so the quiet moves are never
+     * generated or classified.
+     * 
+     * @param moves
+     *            The array that stores the generated moves.
+     * 
+     * @return The number of moves stored in the move array. The moves are
+     *         classified the same way as by classifyMove.
+     */
+    public int getTacticalMoves(int[] moves)
+    {
+        State state = m_currentState;
+        
+        // this also finds which squares are occupied
+        boolean kingCanLeave = canKingReachCorner();
+        
+        // find the squares a piece can move to in order to capture an opponent piece
+        m_targets.clear();
+        if (m_turnPlayer == BLACK)
+        {
+            m_assistingPieces.copy(state.black);
+            m_assistingPieces.or(BitBoardConsts.onlyKingAllowed);
+            
+            for (int i = 0; i < state.whiteCount; i++)
+            {
+                addCaptureTargets(state.whitePieces[i]);
+            }
+            addCaptureTargets(state.kingSquare);
+        }
+        else
+        {
+            m_assistingPieces.copy(state.white);
+            m_assistingPieces.set(state.kingSquare);
+            m_assistingPieces.or(BitBoardConsts.onlyKingAllowed);
+            
+            for (int i = 0; i < state.blackCount; i++)
+            {
+                addCaptureTargets(state.blackPieces[i]);
+            }
+        }
+        
+        int moveCount = 0;
+        if (m_turnPlayer == BLACK)
+        {
+            // if the king can escape, moving in the way of the king may block it
+            if (kingCanLeave)
+            {
+                BitBoardConsts.getLegalMoves(state.kingSquare, true, m_pieces, m_piecesReflected, m_legalMoves);
+                m_targets.or(m_legalMoves);
+            }
+            
+            for (int i = 0; i < state.blackCount; i++)
+            {
+                moveCount = getMoves(moves, moveCount, state.blackPieces[i], false, m_targets);
+            }
+        }
+        else
+        {
+            // any king move might reach a corner or open a route to one
+            moveCount = getMoves(moves, moveCount, state.kingSquare, true, null);
+            
+            // if the king is on an edge, moving a piece out of its way may open a route
+            int kingRow = state.kingSquare / 9;
+            int kingCol = state.kingSquare % 9;
+            boolean kingOnRowEdge = !kingCanLeave && (kingRow == 0 || kingRow == 8);
+            boolean kingOnColEdge = !kingCanLeave && (kingCol == 0 || kingCol == 8);
+            
+            for (int i = 0; i < state.whiteCount; i++)
+            {
+                int square = state.whitePieces[i];
+                boolean mayBlockKing = (kingOnRowEdge && square / 9 == kingRow)
+                        || (kingOnColEdge && square % 9 == kingCol);
+                
+                moveCount = getMoves(moves, moveCount, square, false, mayBlockKing ? null : m_targets);
+            }
+        }
+        
+        // Classify the candidate moves, keeping only the ones that are not quiet. The
+        // full classification is only needed for captures, since removing the
+        // captured pieces can change the king's routes.
+        int tacticalCount = 0;
+        for (int i = 0; i < moveCount; i++)
+        {
+            int move = classifyCaptures(moves[i]);
+            if ((move >>> 14) != 0)
+            {
+                move = classifyMove(moves[i]);
+            }
+            else
+            {
+                move = classifyKingMove(move, kingCanLeave);
+            }
+            
+            if ((move >>> 14) != 0)
+            {
+                moves[tacticalCount++] = move;
+            }
+        }
+        return tacticalCount;
+    }
+    
+    /**
+     * Checks if the turn player has a move that wins the game immediately. Only
+     * the king's moves or the moves next to the king need to be tried.
+     * 
+     * @param moves
+     *            The array used to store the candidate moves.
+     */
+    public boolean hasWinningMove(int[] moves)
+    {
+        if (m_turnPlayer == WHITE)
+        {
+            return canKingReachCorner();
+        }
+        
+        State state = m_currentState;
+        
+        m_pieces.copy(state.black);
+        m_pieces.or(state.white);
+        m_pieces.set(state.kingSquare);
+        m_piecesReflected.copy(m_pieces);
+        m_piecesReflected.mirrorDiagonal();
+        
+        m_assistingPieces.copy(state.black);
+        m_assistingPieces.or(BitBoardConsts.onlyKingAllowed);
+        m_targets.clear();
+        addCaptureTargets(state.kingSquare);
+        
+        int moveCount = 0;
+        for (int i = 0; i < state.blackCount; i++)
+        {
+            moveCount = getMoves(moves, moveCount, state.blackPieces[i], false, m_targets);
+        }
+        
+        for (int i = 0; i < moveCount; i++)
+        {
+            if ((classifyCaptures(moves[i]) & (1 << 30)) != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Marks the squares an opponent piece can be captured from. A piece moving to
+     * one side of the opponent piece captures it if the square on the other side
+     * has a piece that can assist.
+     * 
+     * @param square
+     *            The board square index of the opponent piece.
+     */
+    private void addCaptureTargets(int square)
+    {
+        int row = square / 9;
+        int col = square % 9;
+        
+        if (col > 0 && col < 8)
+        {
+            if (m_assistingPieces.getValue(col + 1, row))
+            {
+                m_targets.set(col - 1, row);
+            }
+            if (m_assistingPieces.getValue(col - 1, row))
+            {
+                m_targets.set(col + 1, row);
+            }
+        }
+        if (row > 0 && row < 8)
+        {
+            if (m_assistingPieces.getValue(col, row + 1))
+            {
+                m_targets.set(col, row - 1);
+            }
+            if (m_assistingPieces.getValue(col, row - 1))
+            {
+                m_targets.set(col, row + 1);
+            }
+        }
+    }
+    
     /**
      * Gets the legal moves that may be made for a piece.
      * 
@@ -608,10 +1271,13 @@ public class StateExplorer
      *            The board square index of the piece.
      * @param isKing
      *            Indicates if this piece is the king.
+     * @param targets
+     *            The destination squares to generate moves to, or null to generate
+     *            all moves.
      * 
      * @return The updated number of moves stored in the move array.
      */
-    private int getMoves(int[] moves, int moveCount, int square, boolean isKing)
+    private int getMoves(int[] moves, int moveCount, int square, boolean isKing, BitBoard targets)
     {
         int row = square / 9;
         int col = square % 9;
@@ -626,7 +1292,7 @@ public class StateExplorer
         int baseIndex = row * 9;
         for (int i = ((rowMoves >> 9) & 0xf); i <= ((rowMoves >> 13) & 0xf); i++)
         {
-            if ((rowMoves & (1 << i)) != 0)
+            if ((rowMoves & (1 << i)) != 0 && (targets == null || targets.getValue(i, row)))
             {
                 moves[moveCount++] = square | ((baseIndex + i) << 7);
             }
@@ -634,7 +1300,7 @@ public class StateExplorer
         
         for (int i = ((colMoves >> 9) & 0xf); i <= ((colMoves >> 13) & 0xf); i++)
         {
-            if ((colMoves & (1 << i)) != 0)
+            if ((colMoves & (1 << i)) != 0 && (targets == null || targets.getValue(col, i)))
             {
                 moves[moveCount++] = square | (((i * 9) + col) << 7);
             }
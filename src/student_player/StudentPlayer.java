@@ -1,8 +1,11 @@
 package student_player;
 
+import java.io.IOException;
 import java.util.Arrays;
 
+import boardgame.BoardState;
 import boardgame.Move;
+import boardgame.Server;
 import tablut.TablutBoardState;
 import tablut.TablutMove;
 import tablut.TablutPlayer;
@@ -15,21 +18,55 @@ import tablut.TablutPlayer;
 public class StudentPlayer extends TablutPlayer
 {
     /**
-     * The time allowed to think during the first turn in nanoseconds.
+     * The most time allowed to think during the first turn in nanoseconds.
      */
     private static final long        START_TURN_TIMEOUT       = (long)(9.95 * 1000000000);
     
     /**
-     * The time allowed to think during turns following the first turn in
-     * nanoseconds.
+     * The most time allowed to think during turns following the first turn in
+     * nanoseconds. Kept a little under the server's limit to leave time for the
+     * move to be sent.
      */
-    private static final long        TURN_TIMEOUT             = (long)(1.95 * 1000000000);
+    private static final long        TURN_TIMEOUT             = (Server.DEFAULT_TIMEOUT - 50) * 1000000L;
     
     /**
      * The memory allocated to the transposition table in megabytes. Very important
-     * to keep as large as possible.
+     * to keep as large as possible. The table uses a power of two number of
+     * buckets, so this should be a power of two to avoid wasting any of it. May be
+     * set with the "student_player.hash" system property, otherwise it is sized
+     * from the physical memory. The table lives outside the heap, so the JVM must
+     * be allowed enough direct memory (-XX:MaxDirectMemorySize) to hold it.
      */
-    private static final int         TRANSPOSITION_TABLE_SIZE = 455;
+    private static final int         TRANSPOSITION_TABLE_SIZE = Integer.getInteger("student_player.hash",
+            TranspositionTable.getDefaultSize());
+    
+    /**
+     * The memory allocated to each search thread's evaluation cache in megabytes.
+     * Disabled by default, since quiescence search checks the transposition table
+     * before evaluating, so most repeated states never reach the cache. May be set
+     * with the "student_player.evalcache" system property.
+     */
+    private static final int         EVALUATION_CACHE_SIZE    = Integer.getInteger("student_player.evalcache", 0);
+    
+    /**
+     * The most time in nanoseconds the solver may spend each turn trying to prove
+     * a forced win. It runs on the calling thread alongside a searcher on every
+     * processor, so it takes its time from the search. Off by default, and may be
+     * set in milliseconds with the "student_player.solvetime" system property.
+     */
+    private static final long        SOLVER_TIME              = Long.getLong("student_player.solvetime", 0)
+            * 1000000L;
+    
+    /**
+     * The most plies a win proven by the solver may take. May be set with the
+     * "student_player.solvedepth" system property.
+     */
+    private static final int         SOLVER_DEPTH             = Integer.getInteger("student_player.solvedepth", 9);
+    
+    /**
+     * The memory allocated to the solver's hash table in megabytes.
+     */
+    private static final int         SOLVER_TABLE_SIZE        = 16;
     
     /**
      * The maximum number of repetitions the AI will allow itself to make unless
@@ -38,28 +75,179 @@ public class StudentPlayer extends TablutPlayer
     private static final int         REPETITION_LIMIT         = 3;
     
     /**
-     * The evalutator and weighting used to score game states.
+     * The number of threads to search with. Defaults to one per available
+     * processor, and may be overridden with the "student_player.threads" system
+     * property.
+     */
+    private static final int         THREAD_COUNT             = Integer.getInteger("student_player.threads",
+            Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * Indicates if the searchers share work through a busy node table, in the
+     * manner of ABDADA, instead of only through the transposition table. Enabled
+     * with the "student_player.worksharing" system property.
+     */
+    private static final boolean     WORK_SHARING             = Boolean.getBoolean("student_player.worksharing");
+    
+    /**
+     * Indicates if search statistics should be printed after every turn. Enabled
+     * with the "student_player.stats" system property.
+     */
+    private static final boolean     PRINT_STATS              = Boolean.getBoolean("student_player.stats");
+    
+    /**
+     * Where the main searcher reports each iteration. "log" prints a line per
+     * iteration, and anything else is the path of a CSV file to append rows to.
+     * Set with the "student_player.telemetry" system property, which also turns
+     * on the search counters.
+     */
+    private static final String      TELEMETRY                = System.getProperty("student_player.telemetry");
+    
+    /**
+     * The class emitting flight recorder events. It is only compiled on JDK 11 or
+     * later, and events cost almost nothing unless a recording is running, so it
+     * is used whenever it can be loaded.
+     */
+    private static final String      FLIGHT_RECORDER_EVENTS   = "student_player.FlightRecorderEvents";
+    
+    /**
+     * The path of the opening book file. May be set with the "student_player.book"
+     * system property. The player searches as usual if there is no book.
+     */
+    static final String              OPENING_BOOK_PATH        = System.getProperty("student_player.book",
+            "data/book.bin");
+    
+    /**
+     * The evalutator and weighting used to score game states. Also used by the
+     * opening book builder so the book plays like the search.
      */
-    private static final Evaluator   m_evaluator              = new Evaluator(6, 1000, 750, 100, 8, 150, 6, 600);
+    static final Evaluator           m_evaluator              = new Evaluator(6, 1000, 750, 100, 8, 150, 6, 600);
     
-    private final TranspositionTable m_transpositionTable     = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);;
-    private final KillerTable        m_killers                = new KillerTable(100);
-    private final int[][]            m_legalMoves             = new int[101][StateExplorer.MAX_LEGAL_MOVES];
-    private final int[][]            m_criticalMoves          = new int[101][StateExplorer.MAX_LEGAL_MOVES];
-    private final int[][]            m_regularMoves           = new int[101][StateExplorer.MAX_LEGAL_MOVES];
+    private final TranspositionTable m_transpositionTable     = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);
+    private final TimeManager        m_timeManager            = new TimeManager();
+    private final OpeningBook        m_openingBook            = OpeningBook.load(OPENING_BOOK_PATH);
+    private final Solver             m_solver                 = SOLVER_TIME > 0
+            ? new Solver(new Evaluator(m_evaluator), SOLVER_TABLE_SIZE) : null;
+    private final ParallelSearch     m_search;
+    private final EngineEvents       m_events;
+    private State                    m_ponderState;
+    private int                      m_ponderTurn;
     private State                    m_lastState1             = new State();
     private State                    m_lastState2             = new State();
     private int                      m_lastMove1;
     private int                      m_lastMove2;
     private int                      m_repetitionCount;
-    private long                     m_stopTime;
     
     /**
      * Associate this player implementation with my student ID.
      */
     public StudentPlayer()
+    {
+        this(THREAD_COUNT);
+    }
+    
+    /**
+     * Creates a player that searches using the given number of threads.
+     * 
+     * @param threadCount
+     *            The number of threads to search with.
+     */
+    public StudentPlayer(int threadCount)
     {
         super("260617022");
+        
+        // the first searcher decides the move, the rest are helpers
+        m_search = new ParallelSearch(threadCount, m_transpositionTable, m_evaluator, WORK_SHARING, m_timeManager,
+                EVALUATION_CACHE_SIZE);
+        
+        TelemetrySink telemetrySink = createTelemetrySink();
+        m_events = createEngineEvents(telemetrySink);
+        m_search.getMainSearcher().setTelemetrySink(m_events != null ? m_events : telemetrySink);
+    }
+    
+    /**
+     * Loads the flight recorder events, if they were compiled and the platform
+     * has jdk.jfr.
+     * 
+     * @param next
+     *            The sink the events pass iteration reports on to, or null.
+     * @return The events, or null if they aren't available.
+     */
+    private static EngineEvents createEngineEvents(TelemetrySink next)
+    {
+        try
+        {
+            return (EngineEvents)Class.forName(FLIGHT_RECORDER_EVENTS).getConstructor(TelemetrySink.class)
+                    .newInstance(next);
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Creates the sink given by the telemetry property.
+     * 
+     * @return The sink, or null if there is none or the file can't be opened.
+     */
+    private static TelemetrySink createTelemetrySink()
+    {
+        if (TELEMETRY == null)
+        {
+            return null;
+        }
+        if (TELEMETRY.equals("log"))
+        {
+            return new LogTelemetrySink(System.out);
+        }
+        
+        try
+        {
+            return new CsvTelemetrySink(TELEMETRY);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not open telemetry file " + TELEMETRY + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Called whenever a move is received from the server, including our own.
+     * After our move we start pondering the opponent's expected reply, and when
+     * the opponent's move arrives we check if we guessed right.
+     * 
+     * @param boardState
+     *            The board state after the move.
+     * @param move
+     *            The move that was played.
+     */
+    @Override
+    public void movePlayed(BoardState boardState, Move move)
+    {
+        TablutBoardState state = (TablutBoardState)boardState;
+        
+        if (move.getPlayerID() == player_id)
+        {
+            startPondering(state);
+        }
+        else if (m_ponderState != null && !isPonderHit(state))
+        {
+            // the opponent played something else, so the pondering is of no use
+            m_search.stop();
+            m_ponderState = null;
+        }
+    }
+    
+    /**
+     * Stops any search still running once the game is over.
+     */
+    @Override
+    public void gameOver(String msg, BoardState boardState)
+    {
+        m_search.stop();
+        m_ponderState = null;
     }
     
     /**
@@ -71,27 +259,31 @@ public class StudentPlayer extends TablutPlayer
      */
     public Move chooseMove(TablutBoardState boardState)
     {
+        if (m_events != null)
+        {
+            m_events.turnStarted();
+        }
+        
         // get the timeout for this turn so we know how long to plan moves
         int turn = boardState.getTurnNumber();
         long timeout = (turn == 0 ? START_TURN_TIMEOUT : TURN_TIMEOUT);
         
-        int move = getBestMove(new StateExplorer(m_evaluator, boardState), timeout);
+        int move = getBookMove(boardState);
+        if (move == 0)
+        {
+            move = getBestMove(boardState, timeout);
+        }
+        
+        if (m_events != null)
+        {
+            m_events.turnFinished(turn, Math.max(move, 0), m_transpositionTable);
+        }
         
         // if we don't have a valid move for some reason, try a random move as a
         // fallback
         if (move > 0)
         {
-            // extract the coordinates of the move from the packed move integer
-            int from = move & 0x7F;
-            int to = (move >> 7) & 0x7F;
-            
-            int fromRow = from / 9;
-            int fromCol = from % 9;
-            int toRow = to / 9;
-            int toCol = to % 9;
-            
-            // return the chosen move
-            return new TablutMove(fromCol, fromRow, toCol, toRow, boardState.getTurnPlayer());
+            return toTablutMove(move, boardState.getTurnPlayer());
         }
         else
         {
@@ -100,508 +292,281 @@ public class StudentPlayer extends TablutPlayer
     }
     
     /**
-     * Gets the best move available.
+     * Converts a packed move integer to a move that can be sent to the server.
      * 
-     * @param currentState
-     *            The current state of the baord.
-     * @param timeout
-     *            How much time to take searching in nanoseconds.
-     * @return The chosen move.
+     * @param move
+     *            The packed move.
+     * @param player
+     *            The player making the move.
+     * @return The move.
      */
-    private int getBestMove(StateExplorer currentState, long timeout)
+    private static TablutMove toTablutMove(int move, int player)
     {
-        // get the time we want to have a result by
-        long startTime = System.nanoTime();
-        m_stopTime = startTime + timeout;
+        // extract the coordinates of the move from the packed move integer
+        int from = move & 0x7F;
+        int to = (move >> 7) & 0x7F;
         
-        // clear the killer move table
-        m_killers.Clear();
+        int fromRow = from / 9;
+        int fromCol = from % 9;
+        int toRow = to / 9;
+        int toCol = to % 9;
         
-        // Do an iterative depth search to find a good move.
-        // Iterates until all nodes are explored or time is up.
-        int bestMove = 0;
-        int maxDepth = currentState.getRemainingMoves();
-        
-        for (int depth = 1; depth <= maxDepth; depth++)
+        return new TablutMove(fromCol, fromRow, toCol, toRow, player);
+    }
+    
+    /**
+     * Gets the opening book move for a board state.
+     * 
+     * @param boardState
+     *            The current state of the baord.
+     * @return The book move, or 0 if there is no legal book move for the state.
+     */
+    private int getBookMove(TablutBoardState boardState)
+    {
+        if (m_openingBook == null)
         {
-            int result = pvs(currentState, 0, depth, -Short.MAX_VALUE, Short.MAX_VALUE, true);
-            
-            // unpack the best move and use it if this iteration was completed
-            int move = result & 0xFFFF;
-            if (move > 0)
-            {
-                bestMove = move;
-            }
-            else
-            {
-                break;
-            }
+            return 0;
         }
         
-        // keep track of how many times this board has been seen
-        if (m_lastMove2 == bestMove && m_lastState2.equals(currentState.getState()))
+        int move = m_openingBook.getMove(boardState);
+        if (move == 0 || !boardState.isLegal(toTablutMove(move, boardState.getTurnPlayer())))
         {
-            m_repetitionCount++;
+            return 0;
         }
-        else
+        
+        // any pondering started before we reached the book is of no use now
+        m_search.stop();
+        m_ponderState = null;
+        
+        if (PRINT_STATS)
         {
-            m_repetitionCount = 0;
+            System.out.println(String.format("Turn %d: book move", boardState.getTurnNumber()));
         }
-        m_lastState2.copy(m_lastState1);
-        m_lastState1.copy(currentState.getState());
-        m_lastMove2 = m_lastMove1;
-        m_lastMove1 = bestMove;
-        
-        return bestMove;
+        return move;
     }
     
     /**
-     * Does a principle variation search from a given node.
+     * Gets the best move available.
      * 
-     * @param state
-     *            The current search node.
-     * @param ply
-     *            The ply of the node.
-     * @param depth
-     *            The depth left until the cutoff.
-     * @param a
-     *            The alpha value.
-     * @param b
-     *            The beta value.
-     * @param isPVNode
-     *            Indicates if this node is a principle variation node.
-     * @return The value of this node in the most significant 16 bits and the best
-     *         move in the least signinicant 16 bits.
+     * @param boardState
+     *            The current state of the baord.
+     * @param timeout
+     *            The most time to take searching in nanoseconds.
+     * @return The chosen move.
      */
-    private int pvs(StateExplorer state, int ply, int depth, int a, int b, boolean isPVNode)
+    private int getBestMove(TablutBoardState boardState, long timeout)
     {
-        // if a leaf state evaluate and return the value
-        if (depth <= 0 || state.isTerminal())
-        {
-            return quiescence(state, ply, 10, a, b);
-        }
+        // get the time we want to have a result by
+        long startTime = System.nanoTime();
+        long stopTime = startTime + timeout;
         
-        int aOrig = a;
+        // If we have been pondering this exact state, the search is already well under
+        // way. Let it keep going but now under the time limit. Otherwise start fresh.
+        boolean ponderHit = m_ponderState != null && isPonderHit(boardState);
+        m_ponderState = null;
         
-        // check if we have visited this state before and know some information about it
-        long hash = state.getHash();
-        long entry = m_transpositionTable.get(hash, depth, state.getTurnNumber());
-        int tableMove = 0;
+        m_timeManager.start(startTime, timeout);
         
-        // if the entry is valid use the stored information
-        if (entry != TranspositionTable.NO_VALUE)
+        if (ponderHit)
         {
-            int score = TranspositionTable.ExtractScore(entry);
-            int entryDepth = TranspositionTable.ExtractDepth(entry);
-            tableMove = TranspositionTable.ExtractMove(entry);
-            
-            // this entry stores more complete search information to a greater or equal
-            // depth, so we can just use the stored values
-            if (entryDepth >= depth)
-            {
-                if (isRepetition(tableMove, ply))
-                {
-                    score = 0;
-                }
-                
-                // the score represents a different value based on the node type
-                switch (TranspositionTable.ExtractNodeType(entry))
-                {
-                    case TranspositionTable.PV_NODE:
-                        return packMoveScore(tableMove, score);
-                    case TranspositionTable.CUT_NODE:
-                        a = Math.max(a, score);
-                        break;
-                    case TranspositionTable.ALL_NODE:
-                        b = Math.min(b, score);
-                        break;
-                }
-                // alpha-beta prune
-                if (a >= b)
-                {
-                    return packMoveScore(tableMove, score);
-                }
-            }
+            m_search.ponderHit(stopTime);
+        }
+        else
+        {
+            m_search.stop();
+            startSearch(boardState, stopTime);
         }
         
+        // While the searchers work, try to prove a forced win on this thread. A proven
+        // win is played right away, since the search can't find anything better.
         int bestMove = 0;
-        int bestScore = -Short.MAX_VALUE;
-        
-        // Search the pv move if we got it from the table. Most of the time this is the
-        // best move. We search it before move generation since if we get a cut-off we
-        // can save the time.
-        if (tableMove != 0)
+        if (m_solver != null)
         {
-            int score;
-            if (!isRepetition(tableMove, ply))
-            {
-                state.makeMove(tableMove);
-                score = -pvs(state, ply + 1, depth - 1, -b, -a, true) >> 16;
-                state.unmakeMove();
-            }
-            else
-            {
-                // assume repeated boards are draws
-                score = 0;
-            }
-            
-            // check if the move is the best found so far and update the lower bound
-            if (bestScore < score)
-            {
-                bestScore = score;
-                bestMove = tableMove;
-                
-                if (a < bestScore)
-                {
-                    a = bestScore;
-                    
-                    // alpha-beta prune
-                    if (a >= b)
-                    {
-                        PutTTEntry(state, depth, aOrig, b, bestScore, bestMove);
-                        return packMoveScore(bestMove, bestScore);
-                    }
-                }
-            }
+            bestMove = m_solver.solve(boardState, SOLVER_DEPTH, Math.min(startTime + SOLVER_TIME, stopTime));
         }
         
-        // get all legal moves for this state
-        int[] moves = m_legalMoves[ply];
-        int moveCount = state.getAllLegalMoves(moves);
-        
-        // if at a pv node, there is no best move in the table, and there are many plys
-        // remaining to search, do a reduced search to find a good short first move to
-        // check.
-        int IIDMove = 0;
-        if (isPVNode && tableMove == 0 && depth > 3)
+        boolean solved = bestMove != 0;
+        if (solved)
         {
-            int maxDepth = depth - 2;
-            for (int d = 1; d <= maxDepth; d++)
-            {
-                int best = -Short.MAX_VALUE;
-                for (int i = 0; i < moveCount; i++)
-                {
-                    int move = moves[i];
-                    state.makeMove(move);
-                    int score = -pvs(state, ply + 1, d - 1, -b, -a, IIDMove == move) >> 16;
-                    state.unmakeMove();
-                    
-                    if (best < score)
-                    {
-                        best = score;
-                        IIDMove = move;
-                    }
-                }
-            }
+            m_search.stop();
         }
-        
-        // sort the moves
-        int[] criticalMoves = m_criticalMoves[ply];
-        int[] regularMoves = m_regularMoves[ply];
-        int criticalMovesCount = 0;
-        int regularMovesCount = 0;
-        
-        for (int i = 0; i < moveCount; i++)
+        else
         {
-            // get a move
-            int move = moves[i];
-            
-            // skip the principle variation move, it was already searched
-            if (move == tableMove)
-            {
-                continue;
-            }
-            
-            // sets bits in the move indicating the effect of the move
-            int classifiedMove = state.classifyMove(move);
-            
-            // mark the internal iterative deepening move
-            if (move == IIDMove)
-            {
-                classifiedMove |= (1 << 28);
-            }
-            
-            // mark killer moves
-            if (m_killers.contains(ply, move))
-            {
-                classifiedMove |= (1 << 22);
-            }
-            
-            // if the move is important, place it in the list to sort and place in front
-            if ((classifiedMove >>> 14) != 0)
-            {
-                criticalMoves[criticalMovesCount++] = classifiedMove;
-            }
-            else
-            {
-                regularMoves[regularMovesCount++] = move;
-            }
+            bestMove = m_search.finish();
         }
+        Searcher mainSearcher = m_search.getMainSearcher();
         
-        Arrays.sort(criticalMoves, 0, criticalMovesCount);
-        
-        // search the best moves
-        boolean prune = false;
-        
-        for (int i = 0; i < criticalMovesCount; i++)
+        if (m_events != null)
         {
-            if (System.nanoTime() > m_stopTime)
-            {
-                return 0;
-            }
-            
-            int move = criticalMoves[(criticalMovesCount - 1) - i];
-            
-            int score;
-            if (!isRepetition(move, ply))
-            {
-                state.makeMove(move);
-                score = -pvs(state, ply + 1, depth - 1, -b, -a, false) >> 16;
-                state.unmakeMove();
-            }
-            else
-            {
-                // assume repeated boards are draws
-                score = 0;
-            }
-            
-            // check if the move is the best found so far and update the lower bound
-            if (bestScore < score)
-            {
-                bestScore = score;
-                bestMove = move;
-                
-                if (a < bestScore)
-                {
-                    a = bestScore;
-                    
-                    // alpha-beta prune
-                    if (a >= b)
-                    {
-                        prune = true;
-                        break;
-                    }
-                }
-            }
+            m_events.searchFinished(boardState.getTurnNumber(), m_search.getSearchers(), m_transpositionTable, ponderHit, solved);
         }
         
-        // search the remaining moves
-        if (!prune)
+        if (PRINT_STATS)
         {
-            for (int i = 0; i < regularMovesCount; i++)
-            {
-                if (System.nanoTime() > m_stopTime)
-                {
-                    return 0;
-                }
-                
-                int move = regularMoves[i];
-                
-                int score;
-                if (!isRepetition(move, ply))
-                {
-                    state.makeMove(move);
-                    // reduce the move when we can get away with it
-                    int searchDepth = depth < 3 ? depth - 1 : depth - 2;
-                    // Search moves not likely to score higher than what is already found with a
-                    // null window. This means that the search will finish quickly if there is no
-                    // better score, and return quickly if there is one.
-                    score = -pvs(state, ply + 1, searchDepth, -(a + 1), -a, false) >> 16;
-                    // If there is a score that may be better do a full search with the normal
-                    // window and search depth.
-                    if (a < score && score < b && depth > 1)
-                    {
-                        score = -pvs(state, ply + 1, depth - 1, -b, -a, false) >> 16;
-                    }
-                    state.unmakeMove();
-                }
-                else
-                {
-                    score = 0;
-                }
-                
-                // check if the move is the best found so far and update the lower bound
-                if (bestScore < score)
-                {
-                    bestScore = score;
-                    bestMove = move;
-                    
-                    if (a < bestScore)
-                    {
-                        a = bestScore;
-                        
-                        // alpha-beta prune
-                        if (a >= b)
-                        {
-                            prune = true;
-                            break;
-                        }
-                    }
-                }
-            }
+            printStats(boardState.getTurnNumber(), System.nanoTime() - startTime, ponderHit);
         }
         
-        // update transposition table
-        PutTTEntry(state, depth, aOrig, b, bestScore, bestMove);
-        
-        // update killer and history tables with move if a non-capture
-        if (prune && ((bestMove >> 25) & 0x3) == 0)
+        // keep track of how many times this board has been seen
+        State currentState = mainSearcher.getExplorer().getState();
+        if (m_lastMove2 == bestMove && m_lastState2.equals(currentState))
         {
-            m_killers.add(ply, bestMove);
+            m_repetitionCount++;
         }
+        else
+        {
+            m_repetitionCount = 0;
+        }
+        m_lastState2.copy(m_lastState1);
+        m_lastState1.copy(currentState);
+        m_lastMove2 = m_lastMove1;
+        m_lastMove1 = bestMove;
         
-        // return best score and move
-        return packMoveScore(bestMove, bestScore);
+        return bestMove;
     }
     
     /**
-     * Does a quescencse search from a given node.
+     * Starts searching the opponent's expected reply to our move in the
+     * background, so the time the opponent spends thinking isn't wasted. The
+     * expected reply is the best move stored in the transposition table for the
+     * state after our move.
      * 
-     * @param state
-     *            The current search node.
-     * @param ply
-     *            The ply of the node.
-     * @param depth
-     *            The depth left until the cutoff.
-     * @param a
-     *            The alpha value.
-     * @param b
-     *            The beta value.
-     * @return The value of this node in the most significant 16 bits.
+     * @param boardState
+     *            The board state after our move.
      */
-    private int quiescence(StateExplorer state, int ply, int depth, int a, int b)
+    private void startPondering(TablutBoardState boardState)
     {
-        // calculate the standing pat score
-        int eval = state.evaluate();
-        
-        // if a leaf state evaluate and return the value
-        if (depth <= 0 || state.isTerminal())
+        if (boardState.gameOver())
         {
-            return packMoveScore(0, eval);
+            return;
         }
         
-        if (eval >= b)
-        {
-            return packMoveScore(0, eval);
-        }
+        // Search roots are always hashed as our turn, so states where it is the
+        // opponent's turn are stored with the player hash toggled.
+        StateExplorer explorer = new StateExplorer(m_evaluator, boardState);
+        long hash = explorer.getHash() ^ StateExplorer.PLAYER_HASH;
+        long entry = m_transpositionTable.get(hash, 0, explorer.getTurnNumber());
+        int reply = explorer.fromTableMove(TranspositionTable.ExtractMove(entry));
         
-        // get all legal moves for this state
-        int[] moves = m_legalMoves[ply];
-        int moveCount = state.getAllLegalMoves(moves);
-        
-        // get loud moves
-        int[] criticalMoves = m_criticalMoves[ply];
-        int criticalMovesCount = 0;
-        
-        for (int i = 0; i < moveCount; i++)
+        if (entry == TranspositionTable.NO_VALUE || reply == 0 || !explorer.isLegalMove(reply))
         {
-            int move = state.classifyMove(moves[i]);
-            
-            // if the move is important, place it in the list to sort and place in front
-            if ((move >>> 14) != 0)
-            {
-                criticalMoves[criticalMovesCount++] = move;
-            }
+            return;
         }
         
-        // if the state is quiet return the evaluation
-        if (criticalMovesCount == 0)
-        {
-            return packMoveScore(0, eval);
-        }
+        TablutBoardState ponderState = (TablutBoardState)boardState.clone();
+        ponderState.processMove(toTablutMove(reply, boardState.getTurnPlayer()));
         
-        if (a < eval)
+        if (ponderState.gameOver())
         {
-            a = eval;
+            return;
         }
         
-        // sort any important moves and place them first to get more prunes
-        Arrays.sort(criticalMoves, 0, criticalMovesCount);
+        // search until told otherwise
+        m_search.stop();
+        m_timeManager.start(System.nanoTime(), Long.MAX_VALUE);
+        startSearch(ponderState, Long.MAX_VALUE);
         
-        // search the best moves
-        int bestScore = -Short.MAX_VALUE;
-        for (int i = 0; i < criticalMovesCount; i++)
-        {
-            // if time is up we need to stop searching, and we shouldn't use incomplete
-            // search results
-            if (System.nanoTime() > m_stopTime)
-            {
-                return -Short.MAX_VALUE;
-            }
-            
-            // get the next move
-            int move = criticalMoves[(criticalMovesCount - 1) - i];
-            // apply the move to the board
-            state.makeMove(move);
-            // do a search to find the score of the node
-            int score = -quiescence(state, ply + 1, depth - 1, -b, -a) >> 16;
-            // undo the move
-            state.unmakeMove();
-            
-            // check if the move is the best found so far and update the lower bound
-            if (bestScore < score)
-            {
-                bestScore = score;
-                
-                if (a < bestScore)
-                {
-                    a = bestScore;
-                    // alpha-beta prune
-                    if (a >= b)
-                    {
-                        break;
-                    }
-                }
-            }
-        }
-        return packMoveScore(0, bestScore);
+        m_ponderState = new State(ponderState);
+        m_ponderTurn = getTurnIndex(ponderState);
     }
     
     /**
-     * Packs the moves and the score into a single integer.
+     * Checks if a board state is the one being pondered.
      * 
-     * @param move
-     *            The move to pack.
-     * @param score
-     *            The score to pack.
-     * @return The packed move and score.
+     * @param boardState
+     *            The board state to check.
      */
-    private static int packMoveScore(int move, int score)
+    private boolean isPonderHit(TablutBoardState boardState)
     {
-        return (score << 16) | (move & 0x3FFF);
+        return m_ponderTurn == getTurnIndex(boardState) && m_ponderState.equals(new State(boardState));
     }
     
     /**
-     * Updates the transposition table value for a node.
+     * Gets the number of moves made by both players before a board state.
      */
-    private void PutTTEntry(StateExplorer state, int depth, int a, int b, int score, int move)
+    private static int getTurnIndex(TablutBoardState boardState)
     {
-        int nodeType;
-        if (score <= a)
-        {
-            nodeType = TranspositionTable.ALL_NODE;
-        }
-        else if (b <= score)
+        return (2 * boardState.getTurnNumber()) + boardState.getTurnPlayer();
+    }
+    
+    /**
+     * Starts all the searchers on a new root state in the background.
+     * 
+     * @param boardState
+     *            The root board state.
+     * @param stopTime
+     *            The time in nanoseconds at which the search must be stopped.
+     */
+    private void startSearch(TablutBoardState boardState, long stopTime)
+    {
+        // don't allow a move that would repeat the board too many times
+        int repeatedMove = m_repetitionCount > REPETITION_LIMIT ? m_lastMove2 : 0;
+        
+        // each searcher gets a new explorer with a state for every remaining move
+        if (m_events != null)
         {
-            nodeType = TranspositionTable.CUT_NODE;
+            m_events.allocationStarted("search setup");
         }
-        else
+        
+        m_search.start(boardState, stopTime, repeatedMove);
+        
+        if (m_events != null)
         {
-            nodeType = TranspositionTable.PV_NODE;
+            Searcher[] searchers = m_search.getSearchers();
+            m_events.allocationFinished(
+                    searchers.length * (long)(searchers[0].getExplorer().getRemainingMoves() + 3));
         }
-        m_transpositionTable.put(state.getHash(), nodeType, depth, score, move, state.getTurnNumber());
     }
     
     /**
-     * Checks if a move would be a repetition loop.
+     * Prints the depth reached and the search speed over all threads.
      * 
-     * @param state
-     *            The current move to check if repeated.
-     * @param ply
-     *            The current ply of the search.
+     * @param turn
+     *            The current turn number.
+     * @param elapsed
+     *            The time spent searching in nanoseconds.
+     * @param ponderHit
+     *            Indicates if the search started while pondering.
      */
-    private boolean isRepetition(int move, int ply)
+    private void printStats(int turn, long elapsed, boolean ponderHit)
     {
-        return m_repetitionCount > REPETITION_LIMIT && ply == 0 && (move & 0x3FFF) == m_lastMove2;
+        long nodes = 0;
+        long probes = 0;
+        long hits = 0;
+        long evalProbes = 0;
+        long evalHits = 0;
+        int maxDepth = 0;
+        Searcher[] searchers = m_search.getSearchers();
+        for (Searcher searcher : searchers)
+        {
+            nodes += searcher.getNodeCount();
+            probes += searcher.getStats().tableProbes;
+            hits += searcher.getStats().tableHits;
+            maxDepth = Math.max(maxDepth, searcher.getCompletedDepth());
+            
+            EvaluationCache evaluationCache = searcher.getEvaluationCache();
+            if (evaluationCache != null)
+            {
+                evalProbes += evaluationCache.getProbes();
+                evalHits += evaluationCache.getHits();
+            }
+        }
+        
+        System.out.println(String.format(
+                "Turn %d: depth %d (max %d), %d threads, %d nodes, %d nodes/s, %.1f%% TT hits, %.1f%% eval cache hits%s",
+                turn, searchers[0].getCompletedDepth(), maxDepth, searchers.length, nodes,
+                (long)(nodes / (elapsed / 1000000000.0)), probes == 0 ? 0.0 : (100.0 * hits) / probes,
+                evalProbes == 0 ? 0.0 : (100.0 * evalHits) / evalProbes, ponderHit ? ", ponder hit" : ""));
+        
+        if (m_solver != null)
+        {
+            int solvedDepth = m_solver.getSolvedDepth();
+            System.out.println(String.format("    solver: %d nodes, %s", m_solver.getNodeCount(),
+                    solvedDepth > 0 ? "forced win in " + solvedDepth + " plies" : "no forced win found"));
+        }
+        
+        // the main searcher starts at depth 1, so skip depth 0
+        int[] researches = searchers[0].getResearches();
+        System.out.println("    aspiration re-searches by depth: "
+                + Arrays.toString(Arrays.copyOfRange(researches, Math.min(1, researches.length), researches.length)));
     }
 }
@@ -0,0 +1,139 @@
+package student_player;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import tablut.TablutBoardState;
+
+/**
+ * Checks the tactical move generation against the full move generation. At
+ * positions from seeded random games, the moves found by getTacticalMoves are
+ * compared to the legal moves from getAllLegalMoves that classifyMove marks as
+ * not quiet. Both must give the same moves with the same classification, in
+ * any order.
+ * 
+ * Each position that differs is printed with the moves only one side found, or
+ * that the two sides classified differently. If any position differs the exit
+ * status is 1.
+ * 
+ * Usage: TacticalMoveCheck [-positions count] [-seed seed]
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class TacticalMoveCheck
+{
+    private static final int MAX_REPORTED = 10;
+    
+    /**
+     * Runs the check from the command line.
+     */
+    public static void main(String[] args)
+    {
+        int positions = 100000;
+        long seed = System.nanoTime();
+        
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-positions"))
+            {
+                positions = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-seed"))
+            {
+                seed = Long.parseLong(args[++i]);
+            }
+            else
+            {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(2);
+            }
+        }
+        
+        System.out.println(String.format("%d positions, seed %d", positions, seed));
+        
+        Random random = new Random(seed);
+        StateExplorer explorer = new StateExplorer(new Evaluator(StudentPlayer.m_evaluator), new TablutBoardState());
+        int[] moves = new int[StateExplorer.MAX_LEGAL_MOVES];
+        int[] expected = new int[StateExplorer.MAX_LEGAL_MOVES];
+        int[] tactical = new int[StateExplorer.MAX_LEGAL_MOVES];
+        int depth = 0;
+        
+        long tacticalMoves = 0;
+        int mismatches = 0;
+        for (int checked = 0; checked < positions;)
+        {
+            int moveCount = explorer.isTerminal() ? 0 : explorer.getAllLegalMoves(moves);
+            
+            // go back to the start once a game is finished
+            if (moveCount == 0)
+            {
+                for (; depth > 0; depth--)
+                {
+                    explorer.unmakeMove();
+                }
+                continue;
+            }
+            
+            int expectedCount = 0;
+            for (int i = 0; i < moveCount; i++)
+            {
+                int move = explorer.classifyMove(moves[i]);
+                if ((move >>> 14) != 0)
+                {
+                    expected[expectedCount++] = move;
+                }
+            }
+            int tacticalCount = explorer.getTacticalMoves(tactical);
+            
+            Arrays.sort(expected, 0, expectedCount);
+            Arrays.sort(tactical, 0, tacticalCount);
+            if (!Arrays.equals(Arrays.copyOf(expected, expectedCount), Arrays.copyOf(tactical, tacticalCount))
+                    && ++mismatches <= MAX_REPORTED)
+            {
+                report(explorer, expected, expectedCount, tactical, tacticalCount);
+            }
+            tacticalMoves += expectedCount;
+            checked++;
+            
+            explorer.makeMove(moves[random.nextInt(moveCount)]);
+            depth++;
+        }
+        
+        System.out.println(String.format("%d tactical moves expected, %d of %d positions differ", tacticalMoves,
+                mismatches, positions));
+        System.out.println(mismatches == 0 ? "Check passed" : "Check failed");
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Prints a position where the tactical moves differ, with the moves only one
+     * of the move generators found. Moves classified differently are printed
+     * under both.
+     */
+    private static void report(StateExplorer explorer, int[] expected, int expectedCount, int[] tactical,
+            int tacticalCount)
+    {
+        System.out.println("Tactical moves differ in:");
+        System.out.println(explorer);
+        System.out.println("  missing: " + formatMissing(expected, expectedCount, tactical, tacticalCount));
+        System.out.println("  extra:   " + formatMissing(tactical, tacticalCount, expected, expectedCount));
+    }
+    
+    /**
+     * Writes the classified moves in one sorted list that are not in another.
+     */
+    private static String formatMissing(int[] moves, int moveCount, int[] other, int otherCount)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < moveCount; i++)
+        {
+            if (Arrays.binarySearch(other, 0, otherCount, moves[i]) < 0)
+            {
+                int from = moves[i] & 0x7F;
+                int to = (moves[i] >> 7) & 0x7F;
+                sb.append(String.format("%d,%d-%d,%d (%x) ", from % 9, from / 9, to % 9, to / 9, moves[i] >>> 14));
+            }
+        }
+        return sb.toString().trim();
+    }
+}
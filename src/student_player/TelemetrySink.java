@@ -0,0 +1,32 @@
+package student_player;
+
+/**
+ * Receives a report from a searcher after each completed iteration. Reports
+ * are made on the searcher's thread between iterations, so a sink should be
+ * quick, and a sink shared by several searchers must be thread safe.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public interface TelemetrySink
+{
+    /**
+     * Reports a completed iteration.
+     * 
+     * @param turn
+     *            The number of moves made by both players before the root.
+     * @param depth
+     *            The depth of the iteration.
+     * @param score
+     *            The score of the root from the view of the player to move.
+     * @param pv
+     *            The principal variation as packed moves, starting from the
+     *            root.
+     * @param pvLength
+     *            The number of moves in the principal variation.
+     * @param elapsed
+     *            The time since the search started in nanoseconds.
+     * @param stats
+     *            The searcher's counters. Only valid during the call.
+     */
+    void iterationDone(int turn, int depth, int score, int[] pv, int pvLength, long elapsed, SearchStats stats);
+}
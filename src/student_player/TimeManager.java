@@ -0,0 +1,159 @@
+package student_player;
+
+/**
+ * Decides when the main searcher should stop deepening. The searchers still
+ * stop at the hard limit regardless, but it is a waste to start an iteration
+ * that can't finish in time, or to keep searching when the best move has not
+ * changed in many iterations.
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class TimeManager
+{
+    /**
+     * The fraction of the maximum time we normally aim to use.
+     */
+    private static final double TARGET_FRACTION     = 0.5;
+    
+    /**
+     * How much less time is targeted for each iteration the best move has not
+     * changed.
+     */
+    private static final double STABLE_REDUCTION    = 0.1;
+    
+    /**
+     * The smallest fraction of the normal target time we will use once the best
+     * move is stable.
+     */
+    private static final double MIN_STABLE_FRACTION = 0.3;
+    
+    /**
+     * How far the score must fall between iterations before we take the full time
+     * to look for a better move.
+     */
+    private static final int    SCORE_DROP          = 100;
+    
+    /**
+     * The bounds on the estimated effective branching factor, to avoid wild
+     * guesses from very short iterations.
+     */
+    private static final double MIN_BRANCHING       = 1.5;
+    private static final double MAX_BRANCHING       = 10.0;
+    
+    /**
+     * Iterations shorter than this in nanoseconds are too noisy to estimate the
+     * branching factor from.
+     */
+    private static final long   MIN_TIMED_ITERATION = 1000000;
+    
+    private volatile long       m_startTime;
+    private volatile long       m_maxTime;
+    private long                m_iterationStart;
+    private long                m_lastIterationTime;
+    private double              m_branchingFactor;
+    private int                 m_lastMove;
+    private int                 m_lastScore;
+    private int                 m_stableIterations;
+    private boolean             m_scoreDropped;
+    
+    /**
+     * Sets the time available for the current turn. May be called from any thread
+     * while the search is running.
+     * 
+     * @param startTime
+     *            The time in nanoseconds the turn started at.
+     * @param maxTime
+     *            The most time in nanoseconds that may be used, or Long.MAX_VALUE
+     *            to search until stopped.
+     */
+    public void start(long startTime, long maxTime)
+    {
+        m_startTime = startTime;
+        m_maxTime = maxTime;
+    }
+    
+    /**
+     * Clears the information gathered about the previous search. Must be called
+     * from the searching thread before the first iteration.
+     */
+    public void newSearch()
+    {
+        m_iterationStart = System.nanoTime();
+        m_lastIterationTime = 0;
+        m_branchingFactor = 0;
+        m_lastMove = 0;
+        m_lastScore = 0;
+        m_stableIterations = 0;
+        m_scoreDropped = false;
+    }
+    
+    /**
+     * Called by the searcher after completing an iteration to decide if another
+     * iteration should be started.
+     * 
+     * @param move
+     *            The best move found in the iteration.
+     * @param score
+     *            The score of the best move.
+     * @param rootMoves
+     *            The number of legal moves at the root.
+     * @return True if the next iteration should be searched.
+     */
+    public boolean iterationDone(int move, int score, int rootMoves)
+    {
+        long now = System.nanoTime();
+        long iterationTime = now - m_iterationStart;
+        m_iterationStart = now;
+        
+        // estimate the effective branching factor from how much longer this iteration
+        // took than the last one
+        if (m_lastIterationTime >= MIN_TIMED_ITERATION)
+        {
+            double ratio = (double)iterationTime / m_lastIterationTime;
+            ratio = Math.min(Math.max(ratio, MIN_BRANCHING), MAX_BRANCHING);
+            m_branchingFactor = m_branchingFactor == 0 ? ratio : (m_branchingFactor + ratio) / 2;
+        }
+        m_lastIterationTime = iterationTime;
+        
+        // track how long the best move has held and if the score is falling
+        if (m_lastMove != 0)
+        {
+            m_stableIterations = (move == m_lastMove) ? m_stableIterations + 1 : 0;
+            m_scoreDropped = score < m_lastScore - SCORE_DROP;
+        }
+        m_lastMove = move;
+        m_lastScore = score;
+        
+        long maxTime = m_maxTime;
+        
+        // while pondering keep going until stopped
+        if (maxTime == Long.MAX_VALUE)
+        {
+            return true;
+        }
+        
+        // no need to think about a forced move
+        if (rootMoves <= 1)
+        {
+            return false;
+        }
+        
+        // Use less time the longer the best move holds, but if the score is dropping
+        // we might be in trouble so use all the time we can.
+        double target = maxTime;
+        if (!m_scoreDropped)
+        {
+            target *= TARGET_FRACTION * Math.max(1.0 - (STABLE_REDUCTION * m_stableIterations), MIN_STABLE_FRACTION);
+        }
+        
+        long elapsed = now - m_startTime;
+        if (elapsed >= target)
+        {
+            return false;
+        }
+        
+        // don't start an iteration that is not expected to finish in time
+        double branchingFactor = m_branchingFactor == 0 ? MIN_BRANCHING : m_branchingFactor;
+        return elapsed + (iterationTime * branchingFactor) < maxTime;
+    }
+}
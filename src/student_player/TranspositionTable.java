@@ -1,89 +1,284 @@
 package student_player;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * Stores the score of board states that have been visited, so if they are
  * revisited along a different branch of the search tree there is no need to
  * re-explore the same child nodes.
  * 
- * The table is split into small chunks to avoid needing to allocate a massive
- * single table. That causes the JVM to be rather unhappy.
+ * The table is set-associative. A hash maps to a bucket of four entries, and
+ * an entry may be stored in any slot of its bucket. Each entry is a hash and a
+ * data long, so a bucket is exactly 64 bytes, the size of a cache line. The
+ * buckets are packed next to each other so a probe touches one line instead of
+ * one line in a hash table and another in a separate data table. The number of
+ * buckets is a power of two, so the bucket is found by masking the hash instead
+ * of a slow division.
+ * 
+ * The buckets are stored off-heap in direct buffers rather than in Java arrays.
+ * The table is by far the largest thing we allocate, and keeping it out of the
+ * heap means the garbage collector never has to scan or move it, and the heap
+ * can stay small no matter how big the table gets. A direct buffer can't be
+ * bigger than 2 GB, so large tables are split into segments.
+ * 
+ * The table is shared by all search threads without any locking. An entry is
+ * written as two separate longs, so a reader racing with a writer may see the
+ * hash of one entry with the data of another. To detect this the hash is stored
+ * XORed with the data, and a reader only accepts an entry if XORing the two
+ * stored values gives back the hash it is looking for. A torn entry fails that
+ * check and is treated as missing.
  * 
  * @author Scott Sewell, ID: 260617022
  */
 public class TranspositionTable
 {
-    private static final int  NODE_TYPE_LEN   = 2;
-    private static final long NODE_TYPE_MASK  = 0b0011L;
+    private static final int   NODE_TYPE_LEN   = 2;
+    private static final long  NODE_TYPE_MASK  = 0b0011L;
     
-    private static final int  MOVE_LEN        = 14;
-    private static final int  MOVE_SHIFT      = NODE_TYPE_LEN;
-    private static final long MOVE_MASK       = 0b0011_1111_1111_1111L << MOVE_SHIFT;
+    private static final int   MOVE_LEN        = 14;
+    private static final int   MOVE_SHIFT      = NODE_TYPE_LEN;
+    private static final long  MOVE_MASK       = 0b0011_1111_1111_1111L << MOVE_SHIFT;
     
-    private static final int  SCORE_LEN       = 16;
-    private static final int  SCORE_SHIFT     = MOVE_LEN + MOVE_SHIFT;
-    private static final long SCORE_MASK      = 0b1111_1111_1111_1111L << SCORE_SHIFT;
+    private static final int   SCORE_LEN       = 16;
+    private static final int   SCORE_SHIFT     = MOVE_LEN + MOVE_SHIFT;
+    private static final long  SCORE_MASK      = 0b1111_1111_1111_1111L << SCORE_SHIFT;
     
-    private static final int  DEPTH_LEN       = 5;
-    private static final int  DEPTH_SHIFT     = SCORE_LEN + SCORE_SHIFT;
-    private static final long DEPTH_MASK      = 0b0001_1111L << DEPTH_SHIFT;
+    private static final int   DEPTH_LEN       = 5;
+    private static final int   DEPTH_SHIFT     = SCORE_LEN + SCORE_SHIFT;
+    private static final long  DEPTH_MASK      = 0b0001_1111L << DEPTH_SHIFT;
     
-    private static final int  AGE_LEN         = 7;
-    private static final int  AGE_SHIFT       = DEPTH_LEN + DEPTH_SHIFT;
-    private static final long AGE_MASK        = 0b0111_1111L << AGE_SHIFT;
+    private static final int   AGE_LEN         = 7;
+    private static final int   AGE_SHIFT       = DEPTH_LEN + DEPTH_SHIFT;
+    private static final long  AGE_MASK        = 0b0111_1111L << AGE_SHIFT;
+    
+    /**
+     * The number of entries in each bucket.
+     */
+    public static final int    BUCKET_SIZE     = 4;
+    
+    /**
+     * The cost per entry stored in bytes, the hash followed by the data.
+     */
+    private static final int   ENTRY_BYTES     = 16;
+    
+    /**
+     * The offset of the data from the start of an entry in bytes.
+     */
+    private static final int   DATA_OFFSET     = 8;
+    
+    /**
+     * The cost per bucket stored in bytes.
+     */
+    private static final int   BUCKET_BYTES    = ENTRY_BYTES * BUCKET_SIZE;
+    
+    /**
+     * The number of buckets in each segment of the table, as a power of two.
+     */
+    private static final int   SEGMENT_SHIFT   = 24;
+    
+    /**
+     * The largest number of buckets allowed in a segment, which works out to 1 GB.
+     */
+    private static final int   SEGMENT_BUCKETS = 1 << SEGMENT_SHIFT;
     
     /**
-     * The number of chunks the split the table into.
+     * The largest size in megabytes the table will take when not told a size.
      */
-    public static final int   TABLE_CHUNKS    = 64;
+    private static final int   MAX_AUTO_SIZE   = 1024;
     
     /**
-     * The cost per element stored in bytes.
+     * The smallest size in megabytes the table will shrink to if memory can't be
+     * reserved.
      */
-    private static final int  ELEMENT_SIZE    = 16;
+    private static final int   MIN_SIZE        = 1;
     
     /**
-     * How many turns ahead a new entry must be to replace older entries.
+     * The number of buckets looked at to estimate how full the table is.
      */
-    private static final int  REPLACEMENT_AGE = 12;
+    private static final int   FILL_SAMPLE     = 1000;
     
     /**
      * Node was not found in the table.
      */
-    public static final int   NO_VALUE        = 0;
+    public static final int    NO_VALUE        = 0;
     
     /**
      * Node is a PV node, score is exact.
      */
-    public static final int   PV_NODE         = 1;
+    public static final int    PV_NODE         = 1;
     
     /**
      * Node is an all node, score is an upper bound.
      */
-    public static final int   ALL_NODE        = 2;
+    public static final int    ALL_NODE        = 2;
     
     /**
      * Node is a cut node, score is a lower bound.
      */
-    public static final int   CUT_NODE        = 3;
+    public static final int    CUT_NODE        = 3;
     
-    private final long[][]    m_hashTable;
-    private final long[][]    m_dataTable;
-    private final int         m_capacity;
-    private final int         m_chunkCapacity;
+    private final ByteBuffer[] m_segments;
+    private final long         m_bucketMask;
+    private final int          m_segmentMask;
+    private volatile int       m_rootTurn;
     
     /**
      * Constructs a transposition table.
      * 
      * @param size
      *            The size in megabytes to reserve for the transposition table.
+     *            The number of buckets is rounded down to a power of two, so the
+     *            table may use less memory than this. If the memory can't be
+     *            reserved the size is halved until it can.
      */
     public TranspositionTable(int size)
     {
-        m_capacity = (size * 1024 * 1024) / ELEMENT_SIZE;
-        m_chunkCapacity = m_capacity / TABLE_CHUNKS;
+        long bucketCount = Long.highestOneBit(Math.max(((long)size * 1024 * 1024) / BUCKET_BYTES, 1));
+        
+        ByteBuffer[] segments = null;
+        while (segments == null)
+        {
+            try
+            {
+                segments = allocateSegments(bucketCount);
+            }
+            catch (OutOfMemoryError e)
+            {
+                // there isn't enough direct memory available, try a smaller table
+                if ((bucketCount * BUCKET_BYTES) / (1024 * 1024) <= MIN_SIZE)
+                {
+                    throw e;
+                }
+                bucketCount /= 2;
+            }
+        }
+        
+        m_segments = segments;
+        m_bucketMask = bucketCount - 1;
+        m_segmentMask = (int)Math.min(bucketCount, SEGMENT_BUCKETS) - 1;
+    }
+    
+    /**
+     * Gets a good table size for this machine, a quarter of the physical memory
+     * up to a limit. The free memory changes from moment to moment and is mostly
+     * taken by the file cache, so the total is a steadier guide. Only the
+     * platform's own management bean knows about physical memory, and the method
+     * was renamed in Java 14, so it is looked up by name. If it isn't there we
+     * guess from the heap limit instead.
+     * 
+     * @return The size in megabytes.
+     */
+    public static int getDefaultSize()
+    {
+        long memory = Runtime.getRuntime().maxMemory();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        for (String name : new String[] { "getTotalMemorySize", "getTotalPhysicalMemorySize" })
+        {
+            try
+            {
+                memory = (Long)Class.forName("com.sun.management.OperatingSystemMXBean").getMethod(name).invoke(os);
+                break;
+            }
+            catch (ReflectiveOperationException | ClassCastException e)
+            {
+                // not available on this platform, try the next method
+            }
+        }
+        return (int)Math.max(Math.min((memory / 4) / (1024 * 1024), MAX_AUTO_SIZE), MIN_SIZE);
+    }
+    
+    /**
+     * Reserves the off-heap memory for the table.
+     * 
+     * @param bucketCount
+     *            The number of buckets to allocate, a power of two.
+     * @return The table segments.
+     */
+    private static ByteBuffer[] allocateSegments(long bucketCount)
+    {
+        int segmentBuckets = (int)Math.min(bucketCount, SEGMENT_BUCKETS);
+        ByteBuffer[] segments = new ByteBuffer[(int)(bucketCount / segmentBuckets)];
+        
+        for (int i = 0; i < segments.length; i++)
+        {
+            // direct buffers are zeroed when allocated, so every entry starts empty
+            ByteBuffer buffer = ByteBuffer.allocateDirect(segmentBuckets * BUCKET_BYTES);
+            buffer.order(ByteOrder.nativeOrder());
+            segments[i] = buffer;
+        }
+        return segments;
+    }
+    
+    /**
+     * Gets the size of the table in megabytes.
+     */
+    public int getSize()
+    {
+        return (int)(((m_bucketMask + 1) * BUCKET_BYTES) / (1024 * 1024));
+    }
+    
+    /**
+     * Gets the number of entries the table can hold.
+     */
+    public long getCapacity()
+    {
+        return (m_bucketMask + 1) * BUCKET_SIZE;
+    }
+    
+    /**
+     * Estimates how full the table is from the first buckets, the same way UCI
+     * engines report "hashfull".
+     * 
+     * @param currentOnly
+     *            If only entries stored since the root of the current search
+     *            count, rather than every entry.
+     * @return The fraction of the slots that hold entries, in thousandths.
+     */
+    public int getFill(boolean currentOnly)
+    {
+        ByteBuffer segment = m_segments[0];
+        int bucketCount = (int)Math.min(FILL_SAMPLE, m_bucketMask + 1);
+        int rootTurn = m_rootTurn;
+        int used = 0;
         
-        m_hashTable = new long[TABLE_CHUNKS][m_chunkCapacity];
-        m_dataTable = new long[TABLE_CHUNKS][m_chunkCapacity];
+        for (int i = 0; i < bucketCount * BUCKET_BYTES; i += ENTRY_BYTES)
+        {
+            long data = segment.getLong(i + DATA_OFFSET);
+            if (data != NO_VALUE && (!currentOnly || (int)((data & AGE_MASK) >>> AGE_SHIFT) >= rootTurn))
+            {
+                used++;
+            }
+        }
+        return (int)((used * 1000L) / (bucketCount * BUCKET_SIZE));
+    }
+    
+    /**
+     * Removes every entry from the table. Must not be called while searching.
+     */
+    public void clear()
+    {
+        for (ByteBuffer segment : m_segments)
+        {
+            for (int i = 0; i < segment.capacity(); i += 8)
+            {
+                segment.putLong(i, 0);
+            }
+        }
+    }
+    
+    /**
+     * Tells the table a new search is starting. Entries for states before the
+     * root can never be reached again, so they are the first to be replaced.
+     * 
+     * @param turnNumber
+     *            The turn number at the root of the search.
+     */
+    public void setRootTurn(int turnNumber)
+    {
+        m_rootTurn = turnNumber;
     }
     
     /**
@@ -104,35 +299,55 @@ public class TranspositionTable
      */
     public void put(long hash, int nodeType, int depth, int score, int move, int turnNumber)
     {
-        // get the index to check in the table
-        int index = Math.abs((int)(hash % m_capacity));
-        
-        int chunkIndex = index % TABLE_CHUNKS;
-        int arrayIndex = index % m_chunkCapacity;
+        // get the start of the bucket in the table
+        ByteBuffer segment = m_segments[(int)((hash & m_bucketMask) >>> SEGMENT_SHIFT)];
+        int bucket = ((int)hash & m_segmentMask) * BUCKET_BYTES;
+        int rootTurn = m_rootTurn;
         
-        // check if there is an element already stored in the table
-        boolean canReplace = m_hashTable[chunkIndex][arrayIndex] == 0;
+        // Find the slot to store the entry in. Prefer the slot already holding this
+        // state, then an empty slot, then the least valuable entry. Entries from old
+        // searches are worthless, otherwise entries searched to a lower depth are
+        // less valuable.
+        int replace = bucket;
+        int replaceValue = Integer.MAX_VALUE;
         
-        // if there is something in the table already only replace it if it is no longer
-        // useful
-        if (!canReplace)
+        for (int i = bucket; i < bucket + BUCKET_BYTES; i += ENTRY_BYTES)
         {
-            long data = m_dataTable[chunkIndex][arrayIndex];
+            long data = segment.getLong(i + DATA_OFFSET);
             
-            int entryDepth = (int)(data & DEPTH_MASK) >>> DEPTH_SHIFT;
+            if (data == NO_VALUE)
+            {
+                replace = i;
+                break;
+            }
+            
+            int entryDepth = (int)((data & DEPTH_MASK) >>> DEPTH_SHIFT);
             int entryAge = (int)((data & AGE_MASK) >>> AGE_SHIFT);
+            boolean isStale = entryAge < rootTurn;
             
-            canReplace = entryDepth < depth || (turnNumber - entryAge) >= REPLACEMENT_AGE;
-        }
-        
-        // if updating the entry store the hash and values
-        if (canReplace)
-        {
-            long value = ((long)turnNumber << AGE_SHIFT) | ((long)depth << DEPTH_SHIFT) | (((long)score << SCORE_SHIFT) & SCORE_MASK) | (((long)move << MOVE_SHIFT) & MOVE_MASK) | nodeType;
+            if ((segment.getLong(i) ^ data) == hash)
+            {
+                // don't replace a deeper result for this state from the current search
+                if (entryDepth > depth && !isStale)
+                {
+                    return;
+                }
+                replace = i;
+                break;
+            }
             
-            m_hashTable[chunkIndex][arrayIndex] = hash;
-            m_dataTable[chunkIndex][arrayIndex] = value;
+            int value = isStale ? -1 : entryDepth;
+            if (value < replaceValue)
+            {
+                replace = i;
+                replaceValue = value;
+            }
         }
+        
+        long value = ((long)turnNumber << AGE_SHIFT) | ((long)depth << DEPTH_SHIFT) | (((long)score << SCORE_SHIFT) & SCORE_MASK) | (((long)move << MOVE_SHIFT) & MOVE_MASK) | nodeType;
+        
+        segment.putLong(replace, hash ^ value);
+        segment.putLong(replace + DATA_OFFSET, value);
     }
     
     /**
@@ -149,17 +364,21 @@ public class TranspositionTable
      */
     public long get(long hash, int depth, int turnNumber)
     {
-        // get the index to check in the table
-        int index = Math.abs((int)(hash % m_capacity));
-        
-        int chunkIndex = index % TABLE_CHUNKS;
-        int arrayIndex = index % m_chunkCapacity;
+        // get the start of the bucket in the table
+        ByteBuffer segment = m_segments[(int)((hash & m_bucketMask) >>> SEGMENT_SHIFT)];
+        int bucket = ((int)hash & m_segmentMask) * BUCKET_BYTES;
         
-        // check if this hash represents the same value
-        long storedHash = m_hashTable[chunkIndex][arrayIndex];
-        if (storedHash == hash)
+        // Check each entry in the bucket for one stored with this hash. If another
+        // thread wrote the entry while we were reading it, the key and data won't
+        // match.
+        for (int i = bucket; i < bucket + BUCKET_BYTES; i += ENTRY_BYTES)
         {
-            return m_dataTable[chunkIndex][arrayIndex];
+            long key = segment.getLong(i);
+            long data = segment.getLong(i + DATA_OFFSET);
+            if ((key ^ data) == hash)
+            {
+                return data;
+            }
         }
         return NO_VALUE;
     }
@@ -183,7 +402,7 @@ public class TranspositionTable
      */
     public static int ExtractScore(long value)
     {
-        return (int)((value & SCORE_MASK) >> SCORE_SHIFT);
+        return (short)((value & SCORE_MASK) >>> SCORE_SHIFT);
     }
     
     /**
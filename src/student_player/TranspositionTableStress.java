@@ -0,0 +1,189 @@
+package student_player;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tablut.TablutBoardState;
+
+/**
+ * Hammers a small transposition table from many threads at once, to check that
+ * the table never hands back an entry torn between two concurrent writes.
+ * Writer threads play random games and store every position they reach with a
+ * random legal move. Reader threads play random games of their own and probe
+ * every position they reach. Every game starts from the same position, so the
+ * readers find many of the positions the writers store, and a small table
+ * makes the writers keep overwriting the buckets the readers are looking in.
+ * 
+ * Every move a reader gets back from the table must be legal in the position it
+ * probed. If any isn't, the failures are printed and the exit status is 1.
+ * 
+ * Usage: TranspositionTableStress [-writers count] [-readers count] [-hash
+ * megabytes] [-seconds count] [-seed seed]
+ * 
+ * @author Scott Sewell, ID: 260617022
+ */
+public class TranspositionTableStress
+{
+    private static final int         MAX_REPORTED = 10;
+    
+    private final TranspositionTable m_table;
+    private final long               m_endTime;
+    private final AtomicLong         m_stores     = new AtomicLong();
+    private final AtomicLong         m_probes     = new AtomicLong();
+    private final AtomicLong         m_hits       = new AtomicLong();
+    private final AtomicLong         m_failures   = new AtomicLong();
+    
+    /**
+     * Creates a stress test.
+     * 
+     * @param tableSize
+     *            The size of the table in megabytes.
+     * @param seconds
+     *            How long the threads run for.
+     */
+    public TranspositionTableStress(int tableSize, int seconds)
+    {
+        m_table = new TranspositionTable(tableSize);
+        m_endTime = System.nanoTime() + seconds * 1000000000L;
+    }
+    
+    /**
+     * Runs the stress test from the command line.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int writers = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+        int readers = writers;
+        int tableSize = 1;
+        int seconds = 10;
+        long seed = System.nanoTime();
+        
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-writers"))
+            {
+                writers = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-readers"))
+            {
+                readers = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-hash"))
+            {
+                tableSize = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-seconds"))
+            {
+                seconds = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-seed"))
+            {
+                seed = Long.parseLong(args[++i]);
+            }
+            else
+            {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(2);
+            }
+        }
+        
+        TranspositionTableStress stress = new TranspositionTableStress(tableSize, seconds);
+        System.out.println(String.format("%d writers, %d readers, %d MB table, %d s, seed %d", writers, readers,
+                tableSize, seconds, seed));
+        
+        long failures = stress.run(writers, readers, seed);
+        
+        System.out.println(String.format("%d stores, %d probes, %d hits, %d illegal moves", stress.m_stores.get(),
+                stress.m_probes.get(), stress.m_hits.get(), failures));
+        System.out.println(failures == 0 ? "Stress test passed" : "Stress test failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Runs the writer and reader threads until the time is up.
+     * 
+     * @param writers
+     *            The number of threads storing entries.
+     * @param readers
+     *            The number of threads probing entries.
+     * @param seed
+     *            The seed for the random games. Each thread gets its own seed
+     *            derived from this one.
+     * @return The number of illegal moves read from the table.
+     */
+    public long run(int writers, int readers, long seed) throws InterruptedException
+    {
+        Thread[] threads = new Thread[writers + readers];
+        for (int i = 0; i < threads.length; i++)
+        {
+            boolean isWriter = i < writers;
+            Random random = new Random(seed + i);
+            threads[i] = new Thread(() -> play(random, isWriter), (isWriter ? "Writer " : "Reader ") + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        return m_failures.get();
+    }
+    
+    /**
+     * Plays random games until the time is up, storing or probing the table at
+     * every position.
+     * 
+     * @param random
+     *            The source of the moves to play.
+     * @param isWriter
+     *            If the positions are stored, rather than probed.
+     */
+    private void play(Random random, boolean isWriter)
+    {
+        StateExplorer explorer = new StateExplorer(new Evaluator(StudentPlayer.m_evaluator), new TablutBoardState());
+        int[] moves = new int[StateExplorer.MAX_LEGAL_MOVES];
+        int depth = 0;
+        
+        while (System.nanoTime() < m_endTime)
+        {
+            int moveCount = explorer.isTerminal() ? 0 : explorer.getAllLegalMoves(moves);
+            
+            // go back to the start once a game is finished
+            if (moveCount == 0)
+            {
+                for (; depth > 0; depth--)
+                {
+                    explorer.unmakeMove();
+                }
+                continue;
+            }
+            
+            long hash = explorer.getHash();
+            if (isWriter)
+            {
+                int move = moves[random.nextInt(moveCount)];
+                m_table.put(hash, TranspositionTable.PV_NODE + random.nextInt(3), random.nextInt(32),
+                        random.nextInt(2 * Short.MAX_VALUE) - Short.MAX_VALUE, explorer.toTableMove(move),
+                        explorer.getTurnNumber());
+                m_stores.incrementAndGet();
+            }
+            else
+            {
+                long entry = m_table.get(hash, 0, explorer.getTurnNumber());
+                m_probes.incrementAndGet();
+                if (entry != TranspositionTable.NO_VALUE)
+                {
+                    m_hits.incrementAndGet();
+                    int move = explorer.fromTableMove(TranspositionTable.ExtractMove(entry));
+                    if (!explorer.isLegalMove(move) && m_failures.incrementAndGet() <= MAX_REPORTED)
+                    {
+                        System.out.println(String.format("Illegal move %d read for hash %016x in:", move, hash));
+                        System.out.println(explorer);
+                    }
+                }
+            }
+            
+            explorer.makeMove(moves[random.nextInt(moveCount)]);
+            depth++;
+        }
+    }
+}